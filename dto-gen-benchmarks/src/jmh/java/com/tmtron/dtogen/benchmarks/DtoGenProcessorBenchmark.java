@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.benchmarks;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import com.tmtron.dtogen.processor.DtoGenAnnotationProcessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.JavaFileObject;
+
+/**
+ * Measures the throughput of the {@link DtoGenAnnotationProcessor} for synthetic templates
+ * (see {@link SyntheticTemplates}).
+ * <p>
+ * The compilations only run the annotation processing ({@code -proc:only}): so the difference between
+ * {@link #withDtoGen()} and the {@link #withoutProcessor()} baseline is the time spent in the processor (and for
+ * parsing the generated sources).
+ * </p>
+ * <p>
+ * The default parameters are small, so that {@code ./gradlew :dto-gen-benchmarks:jmh} finishes in a reasonable time.
+ * The large templates and the large compilations are measured separately (not as matrix), e.g.:
+ * {@code java -jar build/libs/dto-gen-benchmarks-*-jmh.jar -p templateCount=10 -p memberCount=2000} or
+ * {@code java -jar build/libs/dto-gen-benchmarks-*-jmh.jar -p templateCount=10000 -p memberCount=5}
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DtoGenProcessorBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int templateCount;
+
+    @Param({"5", "50"})
+    public int memberCount;
+
+    private List<JavaFileObject> sources;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sources = SyntheticTemplates.create(templateCount, memberCount);
+
+        // make sure that we measure what we want
+        Compilation compilation = withDtoGen();
+        if (compilation.status() != Compilation.Status.SUCCESS) {
+            throw new IllegalStateException("compilation failed: " + compilation.errors());
+        }
+        if (compilation.generatedSourceFiles().size() != templateCount) {
+            throw new IllegalStateException("expected " + templateCount + " generated files, but got "
+                    + compilation.generatedSourceFiles().size());
+        }
+    }
+
+    @Benchmark
+    public Compilation withDtoGen() {
+        return Compiler.javac()
+                .withProcessors(new DtoGenAnnotationProcessor())
+                .withOptions("-proc:only", "-Xlint:-processing")
+                .compile(sources);
+    }
+
+    /**
+     * the baseline: the same compilation without any annotation processor
+     */
+    @Benchmark
+    public Compilation withoutProcessor() {
+        return Compiler.javac()
+                .withOptions("-proc:only", "-Xlint:-processing")
+                .compile(sources);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.benchmarks;
+
+import com.google.testing.compile.JavaFileObjects;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+
+/**
+ * Creates synthetic templates for the benchmarks.
+ * <p>
+ * For each template there is a superclass and an interface which contain the members. The template uses all
+ * features of dto-gen:
+ * <ul>
+ * <li>members are copied from the superclass and from the interface</li>
+ * <li>every 10th member of the superclass is ignored with {@code @DtoIgnore}</li>
+ * <li>every 10th member of the superclass is renamed with {@code @DtoRename}</li>
+ * <li>a field and a method are copied from the template</li>
+ * </ul>
+ * </p>
+ */
+final class SyntheticTemplates {
+
+    static final String PACKAGE_NAME = "com.tmtron.dtogen.benchmarks.generated";
+
+    private static final String[] MEMBER_TYPES = {"String", "int", "long", "boolean", "java.util.List<String>"};
+
+    private SyntheticTemplates() {
+    }
+
+    /**
+     * @param templateCount the number of templates
+     * @param memberCount   the number of members of each template: 3/4 of the members are in the superclass, the
+     *                      rest is in the interface
+     */
+    static List<JavaFileObject> create(int templateCount, int memberCount) {
+        int interfaceMemberCount = memberCount / 4;
+        int superclassMemberCount = memberCount - interfaceMemberCount;
+
+        List<JavaFileObject> result = new ArrayList<>(3 * templateCount);
+        for (int i = 0; i < templateCount; i++) {
+            result.add(createSuperclass(i, superclassMemberCount));
+            result.add(createInterface(i, interfaceMemberCount));
+            result.add(createTemplate(i, superclassMemberCount));
+        }
+        return result;
+    }
+
+    private static JavaFileObject createSuperclass(int index, int memberCount) {
+        String name = "Domain" + index;
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(PACKAGE_NAME).append(";\n\n");
+        source.append("public abstract class ").append(name).append(" {\n");
+        for (int j = 0; j < memberCount; j++) {
+            source.append("    public abstract ").append(getMemberType(j)).append(" field").append(j).append("();\n");
+        }
+        source.append("    public int nonAbstract() {\n");
+        source.append("        return 1;\n");
+        source.append("    }\n");
+        source.append("}\n");
+        return JavaFileObjects.forSourceString(PACKAGE_NAME + "." + name, source.toString());
+    }
+
+    private static JavaFileObject createInterface(int index, int memberCount) {
+        String name = "IDomain" + index;
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(PACKAGE_NAME).append(";\n\n");
+        source.append("public interface ").append(name).append(" {\n");
+        for (int j = 0; j < memberCount; j++) {
+            source.append("    ").append(getMemberType(j)).append(" iface").append(j).append("();\n");
+        }
+        source.append("}\n");
+        return JavaFileObjects.forSourceString(PACKAGE_NAME + "." + name, source.toString());
+    }
+
+    private static JavaFileObject createTemplate(int index, int superclassMemberCount) {
+        String name = "Dto" + index + "_";
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(PACKAGE_NAME).append(";\n\n");
+        source.append("import com.tmtron.dtogen.processor.DtoConfig;\n");
+        source.append("import com.tmtron.dtogen.processor.DtoIgnore;\n");
+        source.append("import com.tmtron.dtogen.processor.DtoRename;\n\n");
+        source.append("@DtoConfig\n");
+        source.append("public abstract class ").append(name)
+                .append(" extends Domain").append(index)
+                .append(" implements IDomain").append(index).append(" {\n");
+        for (int j = 0; j < superclassMemberCount; j++) {
+            if (j % 10 == 3) {
+                source.append("    @DtoIgnore\n");
+                source.append("    public abstract ").append(getMemberType(j)).append(" field").append(j)
+                        .append("();\n");
+            } else if (j % 10 == 7) {
+                source.append("    @DtoRename\n");
+                source.append("    Object renamed").append(j).append(" = field").append(j).append("();\n");
+            }
+        }
+        source.append("    protected int templateField = 17;\n");
+        source.append("    public String templateMethod() {\n");
+        source.append("        return \"templateMethod\" + templateField;\n");
+        source.append("    }\n");
+        source.append("}\n");
+        return JavaFileObjects.forSourceString(PACKAGE_NAME + "." + name, source.toString());
+    }
+
+    private static String getMemberType(int memberIndex) {
+        return MEMBER_TYPES[memberIndex % MEMBER_TYPES.length];
+    }
+}
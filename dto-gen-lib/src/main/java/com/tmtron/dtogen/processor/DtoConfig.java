@@ -22,6 +22,13 @@ import java.lang.annotation.Target;
 
 // TODO: javadoc
 @Target({ElementType.TYPE})
-@Retention(RetentionPolicy.SOURCE)
+// CLASS: Gradle passes the unchanged templates of an aggregating processor as class files, see dtogen.registry
+@Retention(RetentionPolicy.CLASS)
 public @interface DtoConfig {
+
+    /**
+     * Additional DTOs which are generated from the same template: each projection only contains a subset of the
+     * members of the DTO, e.g. a list-view DTO and an audit DTO.
+     */
+    DtoProjection[] projections() default {};
 }
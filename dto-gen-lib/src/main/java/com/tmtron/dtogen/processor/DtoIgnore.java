@@ -22,6 +22,6 @@ import java.lang.annotation.Target;
 
 // TODO: javadoc
 @Target({ElementType.FIELD, ElementType.METHOD})
-@Retention(RetentionPolicy.SOURCE)
+@Retention(RetentionPolicy.CLASS)
 public @interface DtoIgnore {
 }
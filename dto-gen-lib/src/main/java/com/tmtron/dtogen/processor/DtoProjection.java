@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A named projection of a template, see {@link DtoConfig#projections()}.
+ * <p>
+ * The member names refer to the members of the DTO of the template, i.e. after the {@link DtoIgnore} and
+ * {@link DtoRename} annotations of the template have been applied.
+ * </p>
+ */
+@Target({})
+@Retention(RetentionPolicy.CLASS)
+public @interface DtoProjection {
+
+    /**
+     * @return the simple name of the generated DTO, e.g. "CustomerListItem"
+     */
+    String name();
+
+    /**
+     * @return the names of the members which are included: empty means all members
+     */
+    String[] include() default {};
+
+    /**
+     * @return the names of the members which are not included
+     */
+    String[] ignore() default {};
+
+    /**
+     * @return the renamed members in the format "name=newName", e.g. "lastName=name"
+     */
+    String[] rename() default {};
+}
@@ -22,6 +22,6 @@ import java.lang.annotation.Target;
 
 // TODO: javadoc
 @Target({ElementType.FIELD})
-@Retention(RetentionPolicy.SOURCE)
+@Retention(RetentionPolicy.CLASS)
 public @interface DtoRename {
 }
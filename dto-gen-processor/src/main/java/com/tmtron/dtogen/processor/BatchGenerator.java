@@ -0,0 +1,335 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.sun.source.util.JavacTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Generates the DTOs for all templates in the given source roots without compiling the project.
+ * <p>
+ * For each source root, a javac task runs only the parser and the {@link DtoGenAnnotationProcessor}
+ * ({@code -proc:only}): there is no attribution of method bodies and no bytecode generation. The generated source
+ * files are written directly to the output directory. The source roots are processed in parallel: unless the
+ * {@link DtoIndex} is generated, which depends on all templates, so that all source roots are processed in one task.
+ * </p>
+ * <p>
+ * Only the files that contain {@code DtoConfig} are passed to javac, all other types (e.g. the superclasses of the
+ * templates) are loaded on demand from the source roots or the classpath.
+ * </p>
+ * <p>
+ * With {@code --watch} the generator keeps running and regenerates the DTOs when a file in the source roots changes,
+ * see {@link WatchGenerator}.
+ * </p>
+ * <pre><code>
+ * java -cp dto-gen-processor.jar:... com.tmtron.dtogen.processor.BatchGenerator \
+ *     --out build/generated/dtos [--classpath lib/a.jar:lib/b.jar] [--threads 8] [--watch] \
+ *     [-Adtogen.reproducible=true] \
+ *     src/main/java other-module/src/main/java
+ * </code></pre>
+ */
+public class BatchGenerator {
+
+    private final Path outputDirectory;
+    private final String classpath;
+    private final int threads;
+    private final List<String> processorOptions;
+    private final List<Path> sourceRoots;
+    private final boolean watch;
+
+    BatchGenerator(Path outputDirectory, String classpath, int threads, List<String> processorOptions
+            , List<Path> sourceRoots, boolean watch) {
+        this.outputDirectory = outputDirectory;
+        this.classpath = classpath;
+        this.threads = threads;
+        this.processorOptions = processorOptions;
+        this.sourceRoots = sourceRoots;
+        this.watch = watch;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.err));
+    }
+
+    /**
+     * @return the exit code: 0 when all DTOs have been generated
+     */
+    static int run(String[] args, PrintStream log) {
+        final BatchGenerator batchGenerator;
+        try {
+            batchGenerator = fromArguments(args);
+        } catch (IllegalArgumentException e) {
+            log.println(e.getMessage());
+            log.println("usage: BatchGenerator --out <dir> [--classpath <path>] [--threads <n>] [--watch] "
+                    + "[-A<key>=<value>]... "
+                    + "<source-root>...");
+            return 2;
+        }
+        try {
+            if (batchGenerator.watch) {
+                try (WatchGenerator watchGenerator = new WatchGenerator(batchGenerator, log)) {
+                    watchGenerator.watch();
+                }
+                return 0;
+            }
+            return batchGenerator.generate(log) ? 0 : 1;
+        } catch (IOException | InterruptedException e) {
+            log.println("dto generation failed: " + e);
+            return 1;
+        }
+    }
+
+    static BatchGenerator fromArguments(String[] args) {
+        Path outputDirectory = null;
+        String classpath = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> processorOptions = new ArrayList<>();
+        List<Path> sourceRoots = new ArrayList<>();
+        boolean watch = false;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--out":
+                    outputDirectory = Paths.get(getValue(args, ++i, arg));
+                    break;
+                case "--classpath":
+                    classpath = getValue(args, ++i, arg);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(getValue(args, ++i, arg));
+                    break;
+                case "--watch":
+                    watch = true;
+                    break;
+                default:
+                    if (arg.startsWith("-A")) {
+                        processorOptions.add(arg);
+                    } else if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("unknown option: " + arg);
+                    } else {
+                        sourceRoots.add(Paths.get(arg));
+                    }
+            }
+        }
+        if (outputDirectory == null) {
+            throw new IllegalArgumentException("the output directory (--out) is required");
+        }
+        if (sourceRoots.isEmpty()) {
+            throw new IllegalArgumentException("at least one source root is required");
+        }
+        return new BatchGenerator(outputDirectory, classpath, Math.max(1, threads), processorOptions, sourceRoots
+                , watch);
+    }
+
+    private static String getValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("missing value for " + option);
+        }
+        return args[index];
+    }
+
+    /**
+     * @return true when all DTOs have been generated without errors
+     */
+    boolean generate(PrintStream log) throws IOException, InterruptedException {
+        Files.createDirectories(outputDirectory);
+        if (isAggregating()) {
+            // parallel tasks would overwrite the index and the registry of each other
+            List<Path> templateFiles = new ArrayList<>();
+            for (Path sourceRoot : sourceRoots) {
+                templateFiles.addAll(findTemplateFiles(sourceRoot));
+            }
+            return generate(templateFiles, log);
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(threads, sourceRoots.size()));
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (final Path sourceRoot : sourceRoots) {
+                results.add(executorService.submit(() -> generate(findTemplateFiles(sourceRoot), log)));
+            }
+            boolean success = true;
+            for (Future<Boolean> result : results) {
+                try {
+                    success &= result.get();
+                } catch (ExecutionException e) {
+                    log.println("dto generation failed: " + e.getCause());
+                    success = false;
+                }
+            }
+            return success;
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private boolean generate(List<Path> templateFiles, PrintStream log) throws IOException {
+        if (templateFiles.isEmpty()) {
+            return true;
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = createFileManager(compiler)) {
+            boolean success = createTask(compiler, fileManager, diagnostics, templateFiles
+                    , new DtoGenAnnotationProcessor()).call();
+            printDiagnostics(diagnostics, log);
+            return success;
+        }
+    }
+
+    static StandardJavaFileManager createFileManager(JavaCompiler compiler) {
+        return compiler.getStandardFileManager(null, Locale.ROOT, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a javac task which only runs the processor for the template files
+     */
+    JavacTask createTask(JavaCompiler compiler, StandardJavaFileManager fileManager
+            , DiagnosticCollector<JavaFileObject> diagnostics, Collection<Path> templateFiles
+            , DtoGenAnnotationProcessor processor) {
+        List<File> files = new ArrayList<>();
+        for (Path templateFile : templateFiles) {
+            files.add(templateFile.toFile());
+        }
+        JavacTask task = (JavacTask) compiler.getTask(null, fileManager, diagnostics, getCompilerOptions()
+                , null, fileManager.getJavaFileObjectsFromFiles(files));
+        task.setProcessors(Collections.singletonList(processor));
+        return task;
+    }
+
+    static void printDiagnostics(DiagnosticCollector<JavaFileObject> diagnostics, PrintStream log) {
+        synchronized (log) {
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() != Diagnostic.Kind.NOTE) {
+                    log.println(diagnostic);
+                }
+            }
+        }
+    }
+
+    List<Path> getSourceRoots() {
+        return sourceRoots;
+    }
+
+    Path getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    /**
+     * @return true when the output depends on all templates, i.e. when the {@link DtoIndex} is generated: like the
+     * processor, we ignore the registry option when it has no value
+     */
+    boolean isAggregating() {
+        // parse the options like javac: "-Akey" is passed to the processor as key with a null value
+        Map<String, String> options = new HashMap<>();
+        for (String processorOption : processorOptions) {
+            String keyAndValue = processorOption.substring("-A".length());
+            int separatorIndex = keyAndValue.indexOf('=');
+            if (separatorIndex < 0) {
+                options.put(keyAndValue, null);
+            } else {
+                options.put(keyAndValue.substring(0, separatorIndex), keyAndValue.substring(separatorIndex + 1));
+            }
+        }
+        return ProcessorOptions.getStringOrNull(options, ProcessorOptions.REGISTRY) != null;
+    }
+
+    private List<String> getCompilerOptions() {
+        List<String> result = new ArrayList<>();
+        result.add("-proc:only");
+        // do not generate anything for the types that are loaded on demand
+        result.add("-implicit:none");
+        result.add("-Xlint:-processing");
+        result.add("-s");
+        result.add(outputDirectory.toString());
+        // for the resources, e.g. the DtoIndex
+        result.add("-d");
+        result.add(outputDirectory.toString());
+        result.add("-sourcepath");
+        result.add(joinPaths(sourceRoots));
+        if (classpath != null) {
+            result.add("-classpath");
+            result.add(classpath);
+        }
+        result.addAll(processorOptions);
+        return result;
+    }
+
+    private static String joinPaths(List<Path> paths) {
+        StringBuilder result = new StringBuilder();
+        for (Path path : paths) {
+            if (result.length() > 0) {
+                result.append(File.pathSeparatorChar);
+            }
+            result.append(path);
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return all java files in the source root which may contain a template
+     */
+    static List<Path> findTemplateFiles(Path sourceRoot) throws IOException {
+        final List<Path> result = new ArrayList<>();
+        Files.walkFileTree(sourceRoot, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (isTemplateFile(file)) {
+                    result.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * a cheap text search, which avoids parsing all files of the source root
+     */
+    static boolean isTemplateFile(Path file) throws IOException {
+        return file.getFileName().toString().endsWith(".java")
+                && new String(Files.readAllBytes(file), StandardCharsets.UTF_8)
+                .contains(DtoConfig.class.getSimpleName());
+    }
+}
@@ -15,105 +15,191 @@
  */
 package com.tmtron.dtogen.processor;
 
-import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
+import com.sun.source.util.SourcePositions;
 import com.sun.source.util.TreePath;
-import com.sun.source.util.TreePathScanner;
 import com.sun.source.util.Trees;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic;
 
 /**
+ * Gives access to the source code of the members of a template (field initializers and method bodies).
+ * <p>
+ * The members of a template are scanned only once: the first access to a member of a template will record the
+ * code of all members of this template. So a code scanner should be shared by all templates of a round.
+ * </p>
+ * <p>
+ * The code is sliced from the original source code of the compilation unit (i.e. the formatting and comments
+ * are preserved).
+ * </p>
  * see: https://stackoverflow.com/a/9793567/6287240
  */
 public class CodeScanner {
     private final Trees treesInstance;
+    /**
+     * key: the type element that contains the members (e.g. the template)
+     * value: the code of each member of the type: i.e. the field initializer or the method body
+     */
+    private final Map<TypeElement, Map<Element, String>> codeOfMembersByType = new HashMap<>();
+    private final SourcePositions sourcePositions;
 
     CodeScanner(ProcessingEnvironment processingEnv) {
         this.treesInstance = Trees.instance(processingEnv);
+        this.sourcePositions = treesInstance.getSourcePositions();
     }
 
-    public String getFieldInitializerOrBlank(TypeElement parentOfField, String fieldName) {
-        FieldScanner fieldScanner = new FieldScanner(fieldName);
-        TreePath path = treesInstance.getPath(parentOfField);
-        ExpressionTree fieldInitializer = fieldScanner.scan(path, treesInstance);
-        if (fieldInitializer != null) {
-            return fieldInitializer.toString();
-        } else {
-            return "";
+    /**
+     * @return the source code of the compilation unit of the type or null (e.g. when the type is not available as
+     * source)
+     */
+    public CharSequence getSourceCodeOrNull(TypeElement typeElement) {
+        TreePath path = treesInstance.getPath(typeElement);
+        if (path == null) {
+            return null;
+        }
+        try {
+            return path.getCompilationUnit().getSourceFile().getCharContent(true);
+        } catch (IOException e) {
+            return null;
         }
     }
 
-    public String getMethodBodyOrBlank(TypeElement parentOfMethod, String methodName) {
-        MethodScanner scanner = new MethodScanner(methodName);
-        TreePath path = treesInstance.getPath(parentOfMethod);
-        if (path != null) {
-            MethodTree methodTree = scanner.scan(path, treesInstance);
-            if (methodTree != null && methodTree.getBody() != null) {
-                return methodTree.getBody().toString();
-            }
+    /**
+     * @return the initializer expression of the field, e.g. {@code 17} for {@code int x = 17;}
+     */
+    public String getFieldInitializerOrBlank(VariableElement field) {
+        return getCodeOrBlank(field);
+    }
+
+    /**
+     * @return the statements of the method body without the enclosing curly braces
+     */
+    public String getMethodBodyOrBlank(ExecutableElement method) {
+        return getCodeOrBlank(method);
+    }
+
+    private String getCodeOrBlank(Element member) {
+        TypeElement parentOfMember = (TypeElement) member.getEnclosingElement();
+        Map<Element, String> codeOfMembers = codeOfMembersByType.get(parentOfMember);
+        if (codeOfMembers == null) {
+            codeOfMembers = scanMembers(parentOfMember);
+            codeOfMembersByType.put(parentOfMember, codeOfMembers);
+        }
+        String code = codeOfMembers.get(member);
+        if (code == null) {
+            return "";
+        } else {
+            return code;
         }
-        return "";
     }
 
     /**
-     * A {@link TreePathScanner} which returns a single result or null when you call scan()
+     * Records the code of all direct members of the type in a single pass over the class tree.
+     * Nested types and the contents of the method bodies are not visited.
      *
-     * @param <R> the result type
+     * @return key: member, value: field initializer or method body (members without code are not included)
      */
-    private static class ScannerWithSingleResult<R> extends TreePathScanner<R, Trees> {
-
-        @Override
-        public final R reduce(R item1, R item2) {
-            if (item1 != null) {
-                return item1;
-            } else if (item2 != null) {
-                return item2;
-            } else {
-                return null;
+    private Map<Element, String> scanMembers(TypeElement parentOfMembers) {
+        Map<Element, String> result = new HashMap<>();
+        TreePath classPath = treesInstance.getPath(parentOfMembers);
+        if (classPath == null || !(classPath.getLeaf() instanceof ClassTree)) {
+            // e.g. the type is not available as source
+            return result;
+        }
+        CompilationUnitTree compilationUnit = classPath.getCompilationUnit();
+        CharSequence sourceCode;
+        try {
+            sourceCode = compilationUnit.getSourceFile().getCharContent(true);
+        } catch (IOException e) {
+            sourceCode = null;
+        }
+        ClassTree classTree = (ClassTree) classPath.getLeaf();
+        for (Tree memberTree : classTree.getMembers()) {
+            final Tree codeTree;
+            switch (memberTree.getKind()) {
+                case VARIABLE:
+                    codeTree = ((VariableTree) memberTree).getInitializer();
+                    break;
+                case METHOD:
+                    codeTree = ((MethodTree) memberTree).getBody();
+                    break;
+                default:
+                    codeTree = null;
+            }
+            if (codeTree != null) {
+                Element member = treesInstance.getElement(new TreePath(classPath, memberTree));
+                if (member != null) {
+                    result.put(member, getCode(compilationUnit, sourceCode, codeTree));
+                }
             }
         }
-
+        return result;
     }
 
     /**
-     * returns the initializer of a field or {@code null}
+     * @return the original source code of the tree with {@code \n} line breaks: for blocks without the curly braces
+     * and without the common indentation of the lines (JavaPoet indents the code again)
      */
-    private static class FieldScanner extends ScannerWithSingleResult<ExpressionTree> {
-
-        private final String fieldName;
-
-        private FieldScanner(String fieldName) {
-            this.fieldName = fieldName;
+    private String getCode(CompilationUnitTree compilationUnit, CharSequence sourceCode, Tree codeTree) {
+        int start = (int) sourcePositions.getStartPosition(compilationUnit, codeTree);
+        int end = (int) sourcePositions.getEndPosition(compilationUnit, codeTree);
+        if (sourceCode == null || start == Diagnostic.NOPOS || end == Diagnostic.NOPOS || end > sourceCode.length()) {
+            // fallback: let javac print the tree
+            String code = codeTree.toString();
+            return codeTree.getKind() == Tree.Kind.BLOCK
+                    ? StringUtils.removeIndentation(StringUtils.removeCurlyBraces(code)) : code;
         }
-
-        @Override
-        public ExpressionTree visitVariable(VariableTree variableTree, Trees trees) {
-            if (variableTree.getName().toString().equals(this.fieldName)) {
-                return variableTree.getInitializer();
-            } else {
-                return null;
+        if (codeTree.getKind() == Tree.Kind.BLOCK) {
+            // skip the curly braces and the line breaks after the opening and before the closing brace
+            start = skipWhitespaceUntilLineBreak(sourceCode, start + 1);
+            end = end - 1;
+            int lastLineStart = end;
+            while (lastLineStart > start && isBlank(sourceCode.charAt(lastLineStart - 1))) {
+                lastLineStart--;
+            }
+            if (lastLineStart > start && sourceCode.charAt(lastLineStart - 1) == '\n') {
+                end = lastLineStart;
             }
         }
+        // the first line of other trees has no indentation: this only normalizes the line breaks
+        return StringUtils.removeIndentation(sourceCode, start, end);
     }
 
-    private static class MethodScanner extends ScannerWithSingleResult<MethodTree> {
-
-        private final String nameToFind;
-
-        private MethodScanner(String nameToFind) {
-            this.nameToFind = nameToFind;
+    /**
+     * @return the index after the line break when there are only whitespace characters until the line break,
+     * otherwise the start index
+     */
+    private static int skipWhitespaceUntilLineBreak(CharSequence sourceCode, int start) {
+        int index = start;
+        while (index < sourceCode.length() && isBlank(sourceCode.charAt(index))) {
+            index++;
         }
-
-        @Override
-        public MethodTree visitMethod(MethodTree methodTree, Trees trees) {
-            if (methodTree.getName().contentEquals(nameToFind)) {
-                return methodTree;
-            } else {
-                return null;
-            }
+        if (index < sourceCode.length() && sourceCode.charAt(index) == '\r') {
+            index++;
         }
+        if (index < sourceCode.length() && sourceCode.charAt(index) == '\n') {
+            return index + 1;
+        }
+        return start;
+    }
+
+    /**
+     * @return true for spaces and tabs (but not for line breaks)
+     */
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t';
     }
-}
\ No newline at end of file
+}
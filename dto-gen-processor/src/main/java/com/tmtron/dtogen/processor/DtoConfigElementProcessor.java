@@ -19,44 +19,118 @@ import com.google.auto.common.MoreTypes;
 import com.squareup.javapoet.AnnotationSpec;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.FieldSpec;
-import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
-import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
 
+/**
+ * Generates the DTO for a single template.
+ * <p>
+ * The members of the generated DTO are always emitted in this order:
+ * <ol>
+ * <li>the members of the template in declaration order</li>
+ * <li>the members copied from the implemented interfaces: interface by interface in the order of the implements
+ * clause and for each interface in the order of its method table (see {@link SourceHierarchy})</li>
+ * <li>the members copied from the superclass in the order of its method table</li>
+ * </ol>
+ * The inherited methods of the sources are also copied. A method is only copied once, and interface methods which
+ * are implemented by the superclass (or its superclasses) are not copied.
+ * So the output only depends on the template and its sources, see also {@link ProcessorOptions#REPRODUCIBLE}
+ * </p>
+ * <p>
+ * The {@link DtoConfig#projections()} of the template share the member analysis: the members of the DTO are
+ * copied once and each projection filters and renames them (see {@link Projection}).
+ * </p>
+ */
 public class DtoConfigElementProcessor {
+
+    private static final String IMMUTABLE_ANNOTATION = "org.immutables.value.Value.Immutable";
+
     private final ProcessingEnvironment processingEnv;
+    private final ProcessorOptions options;
     private final TypeElement elementAnnotatedWithDtoConfig;
 
-    private TypeSpec.Builder typeSpecBuilder;
+    /**
+     * receives the members of the DTO: the type spec builder or a {@link StreamingDtoWriter}
+     */
+    private MemberSink memberSink;
+    private TemplateMemberIndex templateMemberIndex;
+    /**
+     * signatures of the source members, see {@link TemplateMemberIndex#getSignature(ExecutableElement)}
+     */
     private final Set<String> doNotCopyFromSources = new HashSet<>();
     /**
-     * key: name in source
+     * key: signature of the method in the source
      * value: name in target
      */
     private final Map<String, String> renameFromTo = new HashMap<>();
     private final CodeScanner codeScanner;
+    private final SourceHierarchy sourceHierarchy;
+    private final JavaPoetUtil javaPoetUtil;
+    /**
+     * signatures of the methods that have already been copied from a source or that are implemented by the
+     * superclass, see {@link TemplateMemberIndex#getSignature(ExecutableElement)}
+     */
+    private final Set<String> copiedOrImplementedSignatures = new HashSet<>();
+    /**
+     * key: the name of the method in the DTO
+     * value: the method of the source which is copied to the DTO (or which is overridden by the template)
+     */
+    private final Map<String, ExecutableElement> sourceMethodsByTargetName = new HashMap<>();
+    private final GeneratedSourceCache cache;
+    /**
+     * null, unless {@link ProcessorOptions#LINT} is enabled
+     */
+    private final PerformanceLint performanceLint;
+    private final TemplateStats stats;
+    /**
+     * true when the members have already been copied once
+     */
+    private boolean membersCopied;
 
-    public DtoConfigElementProcessor(ProcessingEnvironment processingEnv, TypeElement elementAnnotatedWithDtoConfig) {
+    /**
+     * @param roundContext the round context should be shared by all templates of a round
+     * @param cache        the cache for the generated source code or null: it is not used when the
+     *                     {@link PerformanceLint} is enabled
+     */
+    public DtoConfigElementProcessor(ProcessingEnvironment processingEnv, ProcessorOptions options
+            , RoundContext roundContext, GeneratedSourceCache cache, TypeElement elementAnnotatedWithDtoConfig) {
         this.processingEnv = processingEnv;
+        this.options = options;
+        this.codeScanner = roundContext.getCodeScanner();
+        this.sourceHierarchy = roundContext.getSourceHierarchy();
+        this.javaPoetUtil = roundContext.getJavaPoetUtil();
+        this.performanceLint = options.isLint() ? new PerformanceLint(processingEnv, options) : null;
+        this.cache = performanceLint == null ? cache : null;
         this.elementAnnotatedWithDtoConfig = elementAnnotatedWithDtoConfig;
-        codeScanner = new CodeScanner(processingEnv);
+        this.stats = new TemplateStats(elementAnnotatedWithDtoConfig.getQualifiedName().toString());
     }
 
     private String getPackageName() {
@@ -64,77 +138,715 @@ public class DtoConfigElementProcessor {
                 .toString();
     }
 
-    public void work() {
+    /**
+     * Collects all information for the DTO and its projections from the template: this function must be called on
+     * the javac thread.
+     *
+     * @return the source files for the DTO and its projections which must still be rendered and written
+     */
+    public List<DtoSourceFile> work() {
         // e.g."com.tmtron.dtogen.processor.test.User.class"
         final String msg = "processing DtoConfig for: " + elementAnnotatedWithDtoConfig.getQualifiedName();
         processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, msg, elementAnnotatedWithDtoConfig);
 
+        final long start = System.nanoTime();
+        try {
+            final String fileName = getTargetClassName();
+            final List<TypeElement> sourceTypeElements = getSourceTypeElements();
+            final List<Projection> projections = Projection.of(elementAnnotatedWithDtoConfig);
+            final Map<Projection, String> fileNamesOfProjections = getFileNamesOfProjections(projections);
+            String fingerprint = null;
+            if (cache != null) {
+                CharSequence templateSourceCode = getSourceCodeOrNull();
+                if (templateSourceCode != null) {
+                    fingerprint = cache.getFingerprint(elementAnnotatedWithDtoConfig, templateSourceCode
+                            , sourceTypeElements, sourceHierarchy, options, processingEnv.getSourceVersion());
+                    List<DtoSourceFile> cachedSourceFiles = getCachedSourceFilesOrNull(sourceTypeElements
+                            , fingerprint, fileName, fileNamesOfProjections.values());
+                    if (cachedSourceFiles != null) {
+                        return cachedSourceFiles;
+                    }
+                }
+            }
+            analyzeTemplateMembers();
+            final ProcessorOptions.Target target = getTarget();
+            List<DtoSourceFile> result = new ArrayList<>();
+            // records, immutable and mutable classes are built from all members: so they are never streamed
+            if (target == ProcessorOptions.Target.CLASS
+                    && getMemberCount(sourceTypeElements) > options.getStreamingThreshold()) {
+                // the members are not kept in memory: so they are copied again for each projection
+                result.add(DtoSourceFile.streaming(elementAnnotatedWithDtoConfig, sourceTypeElements, fileName
+                        , writer -> writeStreaming(writer, fileName, null, sourceTypeElements), stats));
+                for (Map.Entry<Projection, String> projectionEntry : fileNamesOfProjections.entrySet()) {
+                    result.add(DtoSourceFile.streaming(elementAnnotatedWithDtoConfig, sourceTypeElements
+                            , projectionEntry.getValue(), writer -> writeStreaming(writer, projectionEntry.getValue()
+                                    , projectionEntry.getKey(), sourceTypeElements), stats));
+                }
+                if (options.isMappers() || options.isJsonWriters()) {
+                    // the mappers and JSON writers only need the accessors
+                    MemberList accessors = copyAccessors(sourceTypeElements);
+                    addCompanions(result, sourceTypeElements, fileName, accessors, null, fingerprint, getDtoKind());
+                    for (Map.Entry<Projection, String> projectionEntry : fileNamesOfProjections.entrySet()) {
+                        addCompanions(result, sourceTypeElements, projectionEntry.getValue()
+                                , project(accessors, projectionEntry.getKey(), false), projectionEntry.getKey()
+                                , fingerprint, getDtoKind());
+                    }
+                }
+                return result;
+            }
+            MemberList members = new MemberList();
+            memberSink = members;
+            copyMembers(sourceTypeElements);
+            addSourceFiles(result, sourceTypeElements, fileName, members, null, fingerprint, target);
+            for (Map.Entry<Projection, String> projectionEntry : fileNamesOfProjections.entrySet()) {
+                addSourceFiles(result, sourceTypeElements, projectionEntry.getValue()
+                        , project(members, projectionEntry.getKey(), true), projectionEntry.getKey(), fingerprint
+                        , target);
+            }
+            return result;
+        } finally {
+            // the time for the code scans is reported separately
+            stats.addMemberAnalysisNanos(System.nanoTime() - start - stats.getCodeScanNanos());
+        }
+    }
+
+    /**
+     * @return false when the template is a class file, e.g. an unchanged template of an incremental build: its
+     * members cannot be copied, because the method bodies and field initializers are not available
+     */
+    boolean hasSourceCode() {
+        return getSourceCodeOrNull() != null;
+    }
+
+    /**
+     * adds the DTO and the projections of the template to the index without generating them again
+     */
+    void addToIndex(DtoIndex dtoIndex) {
+        List<TypeElement> sourceTypeElements = getSourceTypeElements();
+        dtoIndex.add(elementAnnotatedWithDtoConfig, getTargetClassName(), sourceTypeElements, false);
+        for (String projectionFileName : getFileNamesOfProjections(Projection.of(elementAnnotatedWithDtoConfig))
+                .values()) {
+            dtoIndex.add(elementAnnotatedWithDtoConfig, projectionFileName, sourceTypeElements, true);
+        }
+    }
+
+    /**
+     * @return key: the projection, value: the qualified name of its DTO (in the order of the projections)
+     */
+    private Map<Projection, String> getFileNamesOfProjections(List<Projection> projections) {
+        String packageName = getPackageName();
+        Map<Projection, String> result = new LinkedHashMap<>();
+        for (Projection projection : projections) {
+            String projectionFileName = packageName.isEmpty()
+                    ? projection.getName() : packageName + "." + projection.getName();
+            if (projectionFileName.equals(getTargetClassName())) {
+                throw new IllegalArgumentException("The projection name must differ from the name of the DTO: "
+                        + projection.getName());
+            }
+            result.put(projection, projectionFileName);
+        }
+        return result;
+    }
+
+    /**
+     * @return the source files of the DTO and its projections (and their mappers) from the cache or null when any of
+     * them is not cached
+     */
+    private List<DtoSourceFile> getCachedSourceFilesOrNull(List<TypeElement> sourceTypeElements, String fingerprint
+            , String fileName, Collection<String> fileNamesOfProjections) {
+        List<String> fileNames = new ArrayList<>();
+        fileNames.add(fileName);
+        fileNames.addAll(fileNamesOfProjections);
+        List<DtoSourceFile> result = new ArrayList<>();
+        for (String dtoFileName : fileNames) {
+            String cachedContent = cache.getOrNull(dtoFileName, fingerprint);
+            if (cachedContent == null) {
+                return null;
+            }
+            result.add(DtoSourceFile.fromCache(elementAnnotatedWithDtoConfig, sourceTypeElements, dtoFileName
+                    , cachedContent, stats, false));
+            for (String companionSuffix : getCompanionSuffixes()) {
+                String companionFileName = dtoFileName + companionSuffix;
+                String cachedCompanionContent = cache.getOrNull(companionFileName, fingerprint);
+                if (cachedCompanionContent == null) {
+                    return null;
+                }
+                result.add(DtoSourceFile.fromCache(elementAnnotatedWithDtoConfig, sourceTypeElements
+                        , companionFileName, cachedCompanionContent, stats, true));
+            }
+        }
+        // only now: when any file is missing, the template is processed
+        stats.setFromCache(true);
+        return result;
+    }
+
+    /**
+     * @return the suffixes of the companion files of each DTO, e.g. "Mapper"
+     */
+    private List<String> getCompanionSuffixes() {
+        List<String> result = new ArrayList<>();
+        if (options.isMappers()) {
+            result.add(MapperGenerator.MAPPER_SUFFIX);
+        }
+        if (options.isJsonWriters()) {
+            result.add(JsonWriterGenerator.WRITER_SUFFIX);
+        }
+        return result;
+    }
+
+    private CharSequence getSourceCodeOrNull() {
+        long start = System.nanoTime();
+        try {
+            return codeScanner.getSourceCodeOrNull(elementAnnotatedWithDtoConfig);
+        } finally {
+            stats.addCodeScanNanos(System.nanoTime() - start);
+        }
+    }
+
+    private String getMethodBodyOrBlank(ExecutableElement method) {
+        long start = System.nanoTime();
         try {
-            JavaFile.builder(getPackageName(), buildTypeSpec())
-                    .skipJavaLangImports(true)
-                    .build()
-                    .writeTo(processingEnv.getFiler());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            return codeScanner.getMethodBodyOrBlank(method);
+        } finally {
+            stats.addCodeScanNanos(System.nanoTime() - start);
         }
     }
 
-    private TypeSpec buildTypeSpec() {
+    private String getFieldInitializerOrBlank(VariableElement field) {
+        long start = System.nanoTime();
+        try {
+            return codeScanner.getFieldInitializerOrBlank(field);
+        } finally {
+            stats.addCodeScanNanos(System.nanoTime() - start);
+        }
+    }
+
+    private void analyzeTemplateMembers() {
+        templateMemberIndex = new TemplateMemberIndex(processingEnv.getTypeUtils(), elementAnnotatedWithDtoConfig);
         initIgnoreAndRename();
-        typeSpecBuilder = getTypeSpecBuilder();
+    }
+
+    /**
+     * @return the number of members of the template and its sources: an upper bound for the members of the DTO
+     */
+    private int getMemberCount(List<TypeElement> sourceTypeElements) {
+        int result = templateMemberIndex.getMembers().size();
+        for (TypeElement sourceTypeElement : sourceTypeElements) {
+            result += sourceHierarchy.getMethods(sourceTypeElement).size();
+        }
+        return result;
+    }
+
+    /**
+     * adds the source file of the DTO (or of the projection) and its mapper (see {@link ProcessorOptions#MAPPERS})
+     *
+     * @param members    the members of the DTO (or of the projection)
+     * @param projection the projection or null for the DTO of the template
+     */
+    private void addSourceFiles(List<DtoSourceFile> result, List<TypeElement> sourceTypeElements
+            , String targetClassName, MemberList members, Projection projection, String fingerprint
+            , ProcessorOptions.Target target) {
+        RecordLayout recordLayout = target == ProcessorOptions.Target.RECORD
+                ? getRecordLayoutOrNull(targetClassName, members) : null;
+        ImmutableLayout immutableLayout = target == ProcessorOptions.Target.IMMUTABLE
+                ? getImmutableLayoutOrNull(targetClassName, members) : null;
+        MutableLayout mutableLayout = target == ProcessorOptions.Target.MUTABLE
+                ? getMutableLayoutOrNull(targetClassName, members, projection) : null;
+        MapperGenerator.DtoKind dtoKind;
+        if (recordLayout != null) {
+            dtoKind = MapperGenerator.DtoKind.RECORD;
+            final List<AnnotationSpec> typeAnnotations = getTypeAnnotations();
+            result.add(DtoSourceFile.streaming(elementAnnotatedWithDtoConfig, sourceTypeElements, targetClassName
+                    , writer -> recordLayout.writeTo(writer, getPackageName(), typeAnnotations
+                            , elementAnnotatedWithDtoConfig.getModifiers(), getSimpleName(targetClassName))
+                    , stats));
+        } else if (immutableLayout != null) {
+            dtoKind = MapperGenerator.DtoKind.IMMUTABLE_CLASS;
+            result.add(new DtoSourceFile(elementAnnotatedWithDtoConfig, sourceTypeElements, targetClassName
+                    , getPackageName(), immutableLayout.buildTypeSpec(ClassName.bestGuess(targetClassName)
+                    , getTypeAnnotations(), elementAnnotatedWithDtoConfig.getModifiers()), fingerprint, stats));
+        } else if (mutableLayout != null) {
+            dtoKind = MapperGenerator.DtoKind.MUTABLE_CLASS;
+            result.add(new DtoSourceFile(elementAnnotatedWithDtoConfig, sourceTypeElements, targetClassName
+                    , getPackageName(), mutableLayout.buildTypeSpec(ClassName.bestGuess(targetClassName)
+                    , getTypeAnnotations(), elementAnnotatedWithDtoConfig.getModifiers(), getSourceTypeNames())
+                    , fingerprint, stats));
+        } else {
+            dtoKind = getDtoKind();
+            result.add(new DtoSourceFile(elementAnnotatedWithDtoConfig, sourceTypeElements, targetClassName
+                    , getPackageName(), buildTypeSpec(targetClassName, members), fingerprint, stats));
+        }
+        addCompanions(result, sourceTypeElements, targetClassName, members, projection, fingerprint, dtoKind);
+    }
+
+    /**
+     * adds the source files of the mapper (see {@link ProcessorOptions#MAPPERS}) and of the JSON writer (see
+     * {@link ProcessorOptions#JSON_WRITERS}) of the DTO
+     */
+    private void addCompanions(List<DtoSourceFile> result, List<TypeElement> sourceTypeElements
+            , String targetClassName, MemberList members, Projection projection, String fingerprint
+            , MapperGenerator.DtoKind dtoKind) {
+        if (options.isMappers()) {
+            addMapper(result, sourceTypeElements, targetClassName, members, projection, fingerprint, dtoKind);
+        }
+        if (options.isJsonWriters()) {
+            addJsonWriter(result, sourceTypeElements, targetClassName, members, fingerprint);
+        }
+    }
+
+    /**
+     * adds the source file of the JSON writer of the DTO
+     *
+     * @param members the members of the DTO (or of the projection): only the abstract accessors are used. When an
+     *                accessor cannot be written as JSON, the writer is not generated (which is reported as warning)
+     */
+    private void addJsonWriter(List<DtoSourceFile> result, List<TypeElement> sourceTypeElements
+            , String targetClassName, MemberList members, String fingerprint) {
+        final JsonWriterGenerator jsonWriterGenerator = new JsonWriterGenerator(
+                ClassName.get(getPackageName(), getSimpleName(targetClassName))
+                , elementAnnotatedWithDtoConfig.getModifiers(), this::getDeclaredTypeKind);
+        members.replayTo(new MemberSink() {
+            @Override
+            public void addField(FieldSpec fieldSpec) {
+            }
+
+            @Override
+            public void addMethod(MethodSpec methodSpec) {
+                if (methodSpec.hasModifier(Modifier.ABSTRACT) && methodSpec.parameters.isEmpty()
+                        && methodSpec.typeVariables.isEmpty() && !methodSpec.returnType.equals(TypeName.VOID)) {
+                    jsonWriterGenerator.addAccessor(methodSpec);
+                }
+            }
+        });
+        if (!jsonWriterGenerator.getUnsupportedAccessors().isEmpty()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Cannot generate the JSON writer of "
+                    + targetClassName + ", because these accessors cannot be written as JSON: "
+                    + jsonWriterGenerator.getUnsupportedAccessors(), elementAnnotatedWithDtoConfig);
+            return;
+        }
+        result.add(DtoSourceFile.companion(elementAnnotatedWithDtoConfig, sourceTypeElements
+                , jsonWriterGenerator.getWriterClassName().toString(), getPackageName(), jsonWriterGenerator.build()
+                , fingerprint, stats));
+    }
+
+    private JsonWriterGenerator.DeclaredTypeKind getDeclaredTypeKind(ClassName className) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Types typeUtils = processingEnv.getTypeUtils();
+        // e.g. a DTO that is generated in this round
+        TypeElement typeElement = elementUtils.getTypeElement(className.toString());
+        if (typeElement == null) {
+            return JsonWriterGenerator.DeclaredTypeKind.OTHER;
+        }
+        if (typeElement.getKind() == ElementKind.ENUM) {
+            return JsonWriterGenerator.DeclaredTypeKind.ENUM;
+        }
+        TypeMirror type = typeUtils.erasure(typeElement.asType());
+        if (typeUtils.isAssignable(type, getErasure(Iterable.class))) {
+            return JsonWriterGenerator.DeclaredTypeKind.ITERABLE;
+        }
+        if (typeUtils.isAssignable(type, getErasure(Map.class))) {
+            return JsonWriterGenerator.DeclaredTypeKind.OTHER;
+        }
+        // the toString() of Object is not useful as JSON value
+        for (TypeElement current = typeElement; current != null
+                && !current.getQualifiedName().contentEquals(Object.class.getName())
+                ; current = (TypeElement) typeUtils.asElement(current.getSuperclass())) {
+            for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                if (method.getSimpleName().contentEquals("toString") && method.getParameters().isEmpty()
+                        && !method.getModifiers().contains(Modifier.ABSTRACT)) {
+                    return JsonWriterGenerator.DeclaredTypeKind.TO_STRING;
+                }
+            }
+        }
+        return JsonWriterGenerator.DeclaredTypeKind.OTHER;
+    }
+
+    private TypeMirror getErasure(Class<?> clazz) {
+        return processingEnv.getTypeUtils().erasure(
+                processingEnv.getElementUtils().getTypeElement(clazz.getCanonicalName()).asType());
+    }
+
+    /**
+     * @return the record layout or null when the DTO cannot be generated as record (which is reported as warning)
+     */
+    private RecordLayout getRecordLayoutOrNull(String targetClassName, MemberList members) {
+        RecordLayout result = new RecordLayout();
+        members.replayTo(result);
+        if (result.getUnsupportedMembers().isEmpty()) {
+            return result;
+        }
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Cannot generate " + targetClassName
+                + " as record (a class is generated instead), because records do not support these members: "
+                + result.getUnsupportedMembers(), elementAnnotatedWithDtoConfig);
+        return null;
+    }
+
+    /**
+     * @return the immutable layout or null when the DTO cannot be generated as immutable class (which is reported as
+     * warning)
+     */
+    private ImmutableLayout getImmutableLayoutOrNull(String targetClassName, MemberList members) {
+        ImmutableLayout result = new ImmutableLayout();
+        members.replayTo(result);
+        if (result.getUnsupportedMembers().isEmpty()) {
+            return result;
+        }
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Cannot generate " + targetClassName
+                + " as immutable class (an abstract class is generated instead), because it does not support these "
+                + "members: " + result.getUnsupportedMembers(), elementAnnotatedWithDtoConfig);
+        return null;
+    }
+
+    /**
+     * @return the mutable layout or null when the DTO cannot be generated as mutable class (which is reported as
+     * warning)
+     */
+    private MutableLayout getMutableLayoutOrNull(String targetClassName, MemberList members, Projection projection) {
+        MutableLayout result = new MutableLayout(getSourceAccessorNames(members, projection
+                , new ArrayList<String>()));
+        members.replayTo(result);
+        if (result.getUnsupportedMembers().isEmpty()) {
+            return result;
+        }
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Cannot generate " + targetClassName
+                + " as mutable class (an abstract class is generated instead), because it does not support these "
+                + "members: " + result.getUnsupportedMembers(), elementAnnotatedWithDtoConfig);
+        return null;
+    }
+
+    /**
+     * maps the abstract methods of the DTO to the accessors of the source (see {@link #processSourceElement})
+     *
+     * @param members           the members of the DTO (or of the projection): only the abstract methods are used
+     * @param projection        the projection or null for the DTO of the template
+     * @param unmappedAccessors receives the abstract methods which have no accessible accessor on the source
+     * @return key: the name of the abstract method of the DTO, value: the name of the accessor of the source
+     */
+    private Map<String, String> getSourceAccessorNames(MemberList members, final Projection projection
+            , final List<String> unmappedAccessors) {
+        final Map<String, String> result = new HashMap<>();
+        members.replayTo(new MemberSink() {
+            @Override
+            public void addField(FieldSpec fieldSpec) {
+            }
+
+            @Override
+            public void addMethod(MethodSpec methodSpec) {
+                if (!methodSpec.hasModifier(Modifier.ABSTRACT)) {
+                    return;
+                }
+                String nameInDto = projection == null ? methodSpec.name : projection.getOriginalName(methodSpec.name);
+                ExecutableElement sourceMethod = methodSpec.parameters.isEmpty()
+                        ? sourceMethodsByTargetName.get(nameInDto) : null;
+                if (sourceMethod == null) {
+                    unmappedAccessors.add(methodSpec.name);
+                } else if (!isAccessibleFromPackage(sourceMethod)) {
+                    unmappedAccessors.add(methodSpec.name + " (the source method is not accessible)");
+                } else {
+                    result.put(methodSpec.name, sourceMethod.getSimpleName().toString());
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * adds the source file of the mapper of the DTO: when an accessor of the DTO cannot be mapped, the mapper is not
+     * generated (which is reported as warning)
+     *
+     * @param members    the members of the DTO (or of the projection): only the abstract methods are used
+     * @param projection the projection or null for the DTO of the template
+     * @param dtoKind    how the DTO is generated
+     */
+    private void addMapper(List<DtoSourceFile> result, List<TypeElement> sourceTypeElements, String targetClassName
+            , MemberList members, Projection projection, String fingerprint, MapperGenerator.DtoKind dtoKind) {
+        List<TypeName> sourceTypeNames = getSourceTypeNames();
+        if (sourceTypeNames.isEmpty()) {
+            // the template has no source to map from
+            return;
+        }
+        final MapperGenerator mapperGenerator = new MapperGenerator(
+                ClassName.get(getPackageName(), getSimpleName(targetClassName)), dtoKind
+                , elementAnnotatedWithDtoConfig.getModifiers(), sourceTypeNames);
+        if (options.isBulkMappers()) {
+            mapperGenerator.withBulkMethods(options.getParallelMapperThreshold());
+        }
+        final List<String> unmappedAccessors = new ArrayList<>();
+        final Map<String, String> sourceAccessorNames = getSourceAccessorNames(members, projection
+                , unmappedAccessors);
+        members.replayTo(new MemberSink() {
+            @Override
+            public void addField(FieldSpec fieldSpec) {
+            }
+
+            @Override
+            public void addMethod(MethodSpec methodSpec) {
+                if (methodSpec.hasModifier(Modifier.ABSTRACT) && sourceAccessorNames.containsKey(methodSpec.name)) {
+                    mapperGenerator.addAccessor(methodSpec, sourceAccessorNames.get(methodSpec.name));
+                }
+            }
+        });
+        if (!unmappedAccessors.isEmpty()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Cannot generate the mapper of "
+                    + targetClassName + ", because these methods have no accessor on the source: "
+                    + unmappedAccessors, elementAnnotatedWithDtoConfig);
+            return;
+        }
+        result.add(DtoSourceFile.companion(elementAnnotatedWithDtoConfig, sourceTypeElements
+                , mapperGenerator.getMapperClassName().toString(), getPackageName(), mapperGenerator.build()
+                , fingerprint, stats));
+    }
+
+    /**
+     * @return the kind of the DTO when it is generated as abstract class or interface
+     */
+    private MapperGenerator.DtoKind getDtoKind() {
+        if (hasImmutablesAnnotation()) {
+            return MapperGenerator.DtoKind.IMMUTABLES;
+        }
+        return elementAnnotatedWithDtoConfig.getKind() == ElementKind.INTERFACE
+                ? MapperGenerator.DtoKind.INTERFACE : MapperGenerator.DtoKind.CLASS;
+    }
+
+    /**
+     * @return the types of the source: the superclass (unless it is Object) followed by the interfaces of the template
+     */
+    private List<TypeName> getSourceTypeNames() {
+        List<TypeName> result = new ArrayList<>();
+        TypeMirror superclass = elementAnnotatedWithDtoConfig.getSuperclass();
+        if (superclass.getKind() == TypeKind.DECLARED && !MoreTypes.asTypeElement(superclass).getQualifiedName()
+                .contentEquals(Object.class.getCanonicalName())) {
+            result.add(TypeName.get(superclass));
+        }
+        for (TypeMirror interfaceTm : elementAnnotatedWithDtoConfig.getInterfaces()) {
+            result.add(TypeName.get(interfaceTm));
+        }
+        return result;
+    }
+
+    /**
+     * @return true when the method can be called from a class in the package of the template
+     */
+    private boolean isAccessibleFromPackage(ExecutableElement method) {
+        Set<Modifier> modifiers = method.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        return !modifiers.contains(Modifier.PRIVATE) && processingEnv.getElementUtils().getPackageOf(method)
+                .equals(processingEnv.getElementUtils().getPackageOf(elementAnnotatedWithDtoConfig));
+    }
+
+    /**
+     * copies only the abstract methods: used for the mappers of streamed DTOs
+     */
+    private MemberList copyAccessors(List<TypeElement> sourceTypeElements) {
+        final MemberList result = new MemberList();
+        memberSink = new MemberSink() {
+            @Override
+            public void addField(FieldSpec fieldSpec) {
+            }
+
+            @Override
+            public void addMethod(MethodSpec methodSpec) {
+                if (methodSpec.hasModifier(Modifier.ABSTRACT)) {
+                    result.addMethod(methodSpec);
+                }
+            }
+        };
+        copyMembers(sourceTypeElements);
+        return result;
+    }
+
+    /**
+     * @param targetClassName the qualified name of the DTO (or of a projection)
+     */
+    private String getSimpleName(String targetClassName) {
+        String packageName = getPackageName();
+        return packageName.isEmpty() ? targetClassName : targetClassName.substring(packageName.length() + 1);
+    }
+
+    private boolean hasImmutablesAnnotation() {
+        for (AnnotationMirror annotationMirror : elementAnnotatedWithDtoConfig.getAnnotationMirrors()) {
+            if (MoreTypes.asTypeElement(annotationMirror.getAnnotationType()).getQualifiedName()
+                    .contentEquals(IMMUTABLE_ANNOTATION)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records, immutable and mutable classes are only generated for class templates: records only when the source
+     * version supports them (see {@link ProcessorOptions.Target#RECORD}) and immutable and mutable classes only when
+     * Immutables does not implement the template (see {@link ProcessorOptions.Target#IMMUTABLE})
+     *
+     * @return the target of the DTO of this template
+     */
+    private ProcessorOptions.Target getTarget() {
+        ProcessorOptions.Target target = options.getTarget();
+        if (target == ProcessorOptions.Target.CLASS || elementAnnotatedWithDtoConfig.getKind() != ElementKind.CLASS) {
+            return ProcessorOptions.Target.CLASS;
+        }
+        // RELEASE_16: the constant does not exist in older JDKs
+        if (target == ProcessorOptions.Target.RECORD && processingEnv.getSourceVersion().ordinal() < 16) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Records require the source version 16: "
+                    + "a class is generated", elementAnnotatedWithDtoConfig);
+            return ProcessorOptions.Target.CLASS;
+        }
+        if (target != ProcessorOptions.Target.RECORD && hasImmutablesAnnotation()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Immutables implements the template: an "
+                    + "abstract class is generated", elementAnnotatedWithDtoConfig);
+            return ProcessorOptions.Target.CLASS;
+        }
+        return target;
+    }
+
+    /**
+     * @param check true: report the names of the projection which do not match a member
+     * @return the members of the projection
+     */
+    private MemberList project(MemberList members, Projection projection, boolean check) {
+        MemberList result = new MemberList();
+        Projection.Sink projectionSink = projection.filter(result);
+        members.replayTo(projectionSink);
+        if (check) {
+            checkProjection(projection, projectionSink);
+        }
+        return result;
+    }
+
+    /**
+     * @param members the members of the DTO (or of the projection)
+     */
+    private TypeSpec.Builder buildTypeSpec(String targetClassName, MemberList members) {
+        TypeSpec.Builder typeSpecBuilder = getTypeSpecBuilder(targetClassName);
 
         // NOTE: do not copy superclass/interfaces - they are only used for the template
-        copyTemplateClassModifiers();
-        copyTemplateClassAnnotations();
-        AnnotationSpec generatedAnnotation = JavaPoetUtil.createGeneratedAnnotation(DtoConfig.class,
-                elementAnnotatedWithDtoConfig.getQualifiedName().toString());
-        typeSpecBuilder.addAnnotation(generatedAnnotation);
-        copyTemplateMembers();
+        typeSpecBuilder.addModifiers(JavaPoetUtil.modifiersAsArray(elementAnnotatedWithDtoConfig.getModifiers()));
+        typeSpecBuilder.addAnnotations(getTypeAnnotations());
+        members.replayTo(MemberSink.of(typeSpecBuilder));
         // TODO: maybe copy javadoc
 
+        return typeSpecBuilder;
+    }
+
+    private void checkProjection(Projection projection, Projection.Sink projectionSink) {
+        Set<String> unknownNames = projectionSink.getUnknownNames();
+        if (!unknownNames.isEmpty()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "The projection "
+                    + projection.getName() + " references unknown members: " + unknownNames
+                    , elementAnnotatedWithDtoConfig);
+        }
+    }
+
+    /**
+     * writes the DTO with a {@link StreamingDtoWriter}: this function must be called on the javac thread
+     *
+     * @param projection the projection or null for the DTO of the template
+     */
+    private void writeStreaming(Writer writer, String targetClassName, Projection projection
+            , List<TypeElement> sourceTypeElements) throws IOException {
+        StreamingDtoWriter streamingDtoWriter = new StreamingDtoWriter(writer, getPackageName(), getTypeAnnotations()
+                , elementAnnotatedWithDtoConfig.getModifiers(), getTypeKeyword(), getSimpleName(targetClassName));
+        Projection.Sink projectionSink = projection == null ? null : projection.filter(streamingDtoWriter);
+        memberSink = projectionSink == null ? streamingDtoWriter : projectionSink;
+        try {
+            copyMembers(sourceTypeElements);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        streamingDtoWriter.finish();
+        if (projectionSink != null) {
+            checkProjection(projection, projectionSink);
+        }
+    }
+
+    private void copyMembers(List<TypeElement> sourceTypeElements) {
+        copyTemplateMembers();
+        initCopiedOrImplementedSignatures(sourceTypeElements);
+        for (TypeElement sourceTypeElement : sourceTypeElements) {
+            processSourceElement(sourceTypeElement);
+        }
+        membersCopied = true;
+    }
+
+    /**
+     * the members are only counted and checked when they are copied for the first time: streamed projections copy
+     * the members again
+     */
+    private void onMemberCopied(Element member, String methodBodyOrInitializer) {
+        if (membersCopied) {
+            return;
+        }
+        stats.incMembersCopied();
+        if (performanceLint != null) {
+            if (member.getKind() == ElementKind.FIELD) {
+                performanceLint.checkField((VariableElement) member, methodBodyOrInitializer);
+            } else {
+                performanceLint.checkMethod((ExecutableElement) member, methodBodyOrInitializer
+                        , elementAnnotatedWithDtoConfig);
+            }
+        }
+    }
+
+    /**
+     * @return the annotations of the template followed by the {@link javax.annotation.Generated} annotation
+     */
+    private List<AnnotationSpec> getTypeAnnotations() {
+        // copy all annotations, ..
+        List<AnnotationSpec> result = new ArrayList<>(javaPoetUtil.getAnnotationSpecs(elementAnnotatedWithDtoConfig));
+        result.add(JavaPoetUtil.createGeneratedAnnotation(DtoConfig.class,
+                elementAnnotatedWithDtoConfig.getQualifiedName().toString(), !options.isReproducible()));
+        return result;
+    }
+
+    /**
+     * @return the sources of the template: the implemented interfaces followed by the superclass (unless the
+     * superclass is Object)
+     */
+    private List<TypeElement> getSourceTypeElements() {
+        List<TypeElement> result = new ArrayList<>();
         List<? extends TypeMirror> interfaces = elementAnnotatedWithDtoConfig.getInterfaces();
         for (TypeMirror interfaceTm : interfaces) {
-            TypeElement interfaceTypeElement = MoreTypes.asTypeElement(interfaceTm);
-            processSourceElement(interfaceTypeElement);
+            result.add(MoreTypes.asTypeElement(interfaceTm));
         }
         TypeMirror superclass = elementAnnotatedWithDtoConfig.getSuperclass();
-        TypeElement superClassTypeElement = MoreTypes.asTypeElement(superclass);
-        if (!superClassTypeElement.getSimpleName().contentEquals(Object.class.getSimpleName())) {
-            processSourceElement(superClassTypeElement);
+        if (superclass.getKind() == TypeKind.DECLARED) {
+            TypeElement superClassTypeElement = MoreTypes.asTypeElement(superclass);
+            if (!superClassTypeElement.getQualifiedName().contentEquals(Object.class.getCanonicalName())) {
+                result.add(superClassTypeElement);
+            }
         }
-
-        return typeSpecBuilder.build();
+        return result;
     }
 
     private void copyTemplateMembers() {
-        for (Element templateElement : elementAnnotatedWithDtoConfig.getEnclosedElements()) {
-            if (hasDtoIgnoreAnnotation(templateElement) || hasDtoRenameAnnotation(templateElement)) {
+        for (TemplateMemberIndex.TemplateMember templateMember : templateMemberIndex.getMembers()) {
+            if (templateMember.isIgnored() || templateMember.isRenamed()) {
                 continue;
             }
+            Element templateElement = templateMember.getElement();
             switch (templateElement.getKind()) {
                 case METHOD:
                     ExecutableElement templateMethodExecElement = (ExecutableElement) templateElement;
-                    MethodSpec.Builder copyMethodBuilder = JavaPoetUtil.copyMethod(templateMethodExecElement);
-                    String methodBodyOrBlank = codeScanner.getMethodBodyOrBlank(elementAnnotatedWithDtoConfig
-                            , templateMethodExecElement.getSimpleName().toString());
+                    MethodSpec.Builder copyMethodBuilder = javaPoetUtil.copyMethod(templateMethodExecElement);
+                    String methodBodyOrBlank = getMethodBodyOrBlank(templateMethodExecElement);
                     if (!methodBodyOrBlank.isEmpty()) {
-                        methodBodyOrBlank = StringUtils.removeCurlyBraces(methodBodyOrBlank);
-                        copyMethodBuilder.addCode(methodBodyOrBlank);
+                        // $L: the code may contain $ characters
+                        copyMethodBuilder.addCode("$L", methodBodyOrBlank);
                     }
-
-                    typeSpecBuilder.addMethod(copyMethodBuilder.build());
+                    memberSink.addMethod(copyMethodBuilder.build());
+                    onMemberCopied(templateMethodExecElement, methodBodyOrBlank);
                     break;
                 case FIELD:
                     VariableElement variableElement = (VariableElement) templateElement;
-                    FieldSpec.Builder fieldBuilder = JavaPoetUtil.copyField(variableElement);
-                    String fieldInitializer = codeScanner.getFieldInitializerOrBlank(elementAnnotatedWithDtoConfig
-                            , variableElement.getSimpleName().toString());
+                    FieldSpec.Builder fieldBuilder = javaPoetUtil.copyField(variableElement);
+                    String fieldInitializer = getFieldInitializerOrBlank(variableElement);
                     if (!fieldInitializer.isEmpty()) {
-                        fieldInitializer = StringUtils.removeCurlyBraces(fieldInitializer);
-                        fieldBuilder.initializer(fieldInitializer);
+                        fieldBuilder.initializer("$L", fieldInitializer);
                     }
-
-                    typeSpecBuilder.addField(fieldBuilder.build());
+                    memberSink.addField(fieldBuilder.build());
+                    onMemberCopied(variableElement, fieldInitializer);
                     break;
                 default:
                     break;
@@ -154,34 +866,38 @@ public class DtoConfigElementProcessor {
     private void initIgnoreAndRename() {
         renameFromTo.clear();
         doNotCopyFromSources.clear();
-        for (Element element : elementAnnotatedWithDtoConfig.getEnclosedElements()) {
-            if (hasDtoIgnoreAnnotation(element)) {
+        for (TemplateMemberIndex.TemplateMember templateMember : templateMemberIndex.getMembers()) {
+            Element element = templateMember.getElement();
+            if (templateMember.isIgnored()) {
+                stats.incMembersIgnored();
                 switch (element.getKind()) {
                     case METHOD:
-                        doNotCopyFromSources.add(element.getSimpleName().toString());
+                        doNotCopyFromSources.add(templateMemberIndex.getSignature(element));
                         break;
                     case FIELD:
                         String initializerReferenceToSourceField = getInitializerReferenceToSourceFieldOrBlank(element);
                         if (!initializerReferenceToSourceField.isEmpty()) {
-                            doNotCopyFromSources.add(initializerReferenceToSourceField);
+                            doNotCopyFromSources.add(TemplateMemberIndex.getSignatureOfMethodWithoutParameters(
+                                    initializerReferenceToSourceField));
                         }
                         break;
                 }
             }
 
             if (!element.getModifiers().contains(Modifier.ABSTRACT)) {
-                if (hasDtoRenameAnnotation(element)) {
+                if (templateMember.isRenamed()) {
                     String initializerReferenceToSourceField = getInitializerReferenceToSourceFieldOrBlank(element);
                     if (initializerReferenceToSourceField.isEmpty()) {
                         throw new RuntimeException(DtoRename.class.getCanonicalName() + " must only be used for " +
                                 "fields that reference a method on the source. " +
                                 "e.g. from the extended superclass or implemented interface");
                     } else {
-                        renameFromTo.put(initializerReferenceToSourceField, element.getSimpleName().toString());
+                        renameFromTo.put(TemplateMemberIndex.getSignatureOfMethodWithoutParameters(
+                                initializerReferenceToSourceField), element.getSimpleName().toString());
                     }
                 } else {
                     // other non-abstract members are always ignored because they are copied directly from the template
-                    doNotCopyFromSources.add(element.getSimpleName().toString());
+                    doNotCopyFromSources.add(templateMemberIndex.getSignature(element));
                 }
             }
         }
@@ -203,8 +919,7 @@ public class DtoConfigElementProcessor {
     private String getInitializerReferenceToSourceFieldOrBlank(Element element) {
         if (element instanceof VariableElement) {
             VariableElement variableElement = (VariableElement) element;
-            String fieldInitializer = codeScanner.getFieldInitializerOrBlank(elementAnnotatedWithDtoConfig
-                    , variableElement.getSimpleName().toString());
+            String fieldInitializer = getFieldInitializerOrBlank(variableElement);
             if (fieldInitializer.endsWith("()")) {
                 return StringUtils.removeLastChars(fieldInitializer, 2);
             }
@@ -212,55 +927,62 @@ public class DtoConfigElementProcessor {
         return "";
     }
 
-    private boolean hasDtoIgnoreAnnotation(Element element) {
-        return element.getAnnotation(DtoIgnore.class) != null;
-    }
-
-    private boolean hasDtoRenameAnnotation(Element element) {
-        return element.getAnnotation(DtoRename.class) != null;
-    }
-
-    private Element getElementFromTemplateOrNull(Name elementName) {
-        for (Element element : elementAnnotatedWithDtoConfig.getEnclosedElements()) {
-            if (element.getSimpleName().contentEquals(elementName)) {
-                return element;
+    /**
+     * the superclass takes priority: the methods that it implements must not be copied from the interfaces
+     */
+    private void initCopiedOrImplementedSignatures(List<TypeElement> sourceTypeElements) {
+        copiedOrImplementedSignatures.clear();
+        for (TypeElement sourceTypeElement : sourceTypeElements) {
+            if (sourceTypeElement.getKind() != ElementKind.CLASS) {
+                continue;
+            }
+            for (ExecutableElement method : sourceHierarchy.getMethods(sourceTypeElement)) {
+                if (!method.getModifiers().contains(Modifier.ABSTRACT)
+                        && !method.getModifiers().contains(Modifier.STATIC)) {
+                    copiedOrImplementedSignatures.add(templateMemberIndex.getSignature(method));
+                }
             }
         }
-        return null;
     }
 
     /**
-     * Will loop over all elements in the sourceTypeElement (which is the superclass of the template, or
-     * an implemented interface) and may copy it to the target class
+     * Will loop over all methods of the sourceTypeElement (which is the superclass of the template, or
+     * an implemented interface) including the inherited methods and may copy them to the target class
      *
      * @param sourceTypeElement a source class or interface from which we may copy methods
      */
     private void processSourceElement(TypeElement sourceTypeElement) {
-        for (Element sourceElement : sourceTypeElement.getEnclosedElements()) {
-            if (doNotCopyFromSources.contains(sourceElement.getSimpleName().toString())) {
-                continue;
-            }
-
+        for (Element sourceElement : sourceHierarchy.getMethods(sourceTypeElement)) {
             switch (sourceElement.getKind()) {
                 case METHOD:
                     ExecutableElement sourceMethodExecElement = (ExecutableElement) sourceElement;
-                    Element templateElementOrNull = getElementFromTemplateOrNull(sourceElement.getSimpleName());
-                    if (templateElementOrNull != null) {
-                        // TODO: the template has a sourceElement with this name - use it
+                    final String sourceMethodSignature = templateMemberIndex.getSignature(sourceMethodExecElement);
+                    if (doNotCopyFromSources.contains(sourceMethodSignature)
+                            || !copiedOrImplementedSignatures.add(sourceMethodSignature)) {
+                        continue;
+                    }
+                    if (templateMemberIndex.getOrNull(sourceMethodSignature) != null) {
+                        // TODO: the template has a sourceElement with this signature - use it
+                        // the mapper calls the method of the source
+                        sourceMethodsByTargetName.put(sourceMethodExecElement.getSimpleName().toString()
+                                , sourceMethodExecElement);
                     } else {
-                        // the template does not have a sourceElement with this name - copy it from the source
+                        // the template does not have a sourceElement with this signature - copy it from the source
                         if (sourceMethodExecElement.getModifiers().contains(Modifier.ABSTRACT)) {
-                            final String sourceMethodName = sourceMethodExecElement.getSimpleName().toString();
                             final String targetMethodName;
-                            if (renameFromTo.containsKey(sourceMethodName)) {
-                                targetMethodName = renameFromTo.get(sourceMethodName);
-                                renameFromTo.remove(sourceMethodName);
+                            if (renameFromTo.containsKey(sourceMethodSignature)) {
+                                targetMethodName = renameFromTo.get(sourceMethodSignature);
+                                if (!membersCopied) {
+                                    stats.incMembersRenamed();
+                                }
                             } else {
-                                targetMethodName = sourceMethodName;
+                                targetMethodName = sourceMethodExecElement.getSimpleName().toString();
                             }
-                            MethodSpec.Builder copyMethodBuilder = JavaPoetUtil.copyMethod(sourceMethodExecElement
+                            sourceMethodsByTargetName.put(targetMethodName, sourceMethodExecElement);
+                            MethodSpec.Builder copyMethodBuilder = javaPoetUtil.copyMethod(sourceMethodExecElement
                                     , targetMethodName);
-                            typeSpecBuilder.addMethod(copyMethodBuilder.build());
+                            memberSink.addMethod(copyMethodBuilder.build());
+                            onMemberCopied(sourceMethodExecElement, "");
                         }
                     }
                     break;
@@ -270,20 +992,7 @@ public class DtoConfigElementProcessor {
         }
     }
 
-    private void copyTemplateClassAnnotations() {
-        // copy all annotations, ..
-        List<AnnotationSpec> annotationSpecs = JavaPoetUtil.getAnnotationSpecs(elementAnnotatedWithDtoConfig);
-        typeSpecBuilder.addAnnotations(annotationSpecs);
-    }
-
-    private void copyTemplateClassModifiers() {
-        Modifier[] modifiers = JavaPoetUtil.modifiersAsArray(elementAnnotatedWithDtoConfig.getModifiers());
-        typeSpecBuilder.addModifiers(modifiers);
-    }
-
-    private TypeSpec.Builder getTypeSpecBuilder() {
-        String targetClassName = getTargetClassName();
-
+    private TypeSpec.Builder getTypeSpecBuilder(String targetClassName) {
         ClassName targetName = ClassName.bestGuess(targetClassName);
         TypeSpec.Builder result;
         switch (elementAnnotatedWithDtoConfig.getKind()) {
@@ -299,8 +1008,29 @@ public class DtoConfigElementProcessor {
         return result;
     }
 
+    /**
+     * @return the keyword of the type declaration for the {@link StreamingDtoWriter}
+     */
+    private String getTypeKeyword() {
+        switch (elementAnnotatedWithDtoConfig.getKind()) {
+            case CLASS:
+                return "class";
+            case INTERFACE:
+                return "interface";
+            default:
+                throw new RuntimeException("Unsupported type " + elementAnnotatedWithDtoConfig.getKind().name());
+        }
+    }
+
     private String getTargetClassName() {
-        String targetClassName = elementAnnotatedWithDtoConfig.getQualifiedName().toString();
+        return getTargetClassName(elementAnnotatedWithDtoConfig);
+    }
+
+    /**
+     * @return the qualified name of the DTO of the template (i.e. not of a projection)
+     */
+    static String getTargetClassName(TypeElement template) {
+        String targetClassName = template.getQualifiedName().toString();
         if (targetClassName.endsWith("_")) {
             targetClassName = StringUtils.removeLastChars(targetClassName, 1);
         }
@@ -17,18 +17,66 @@ package com.tmtron.dtogen.processor;
 
 import com.google.auto.common.BasicAnnotationProcessor;
 import com.google.auto.service.AutoService;
+import com.google.common.collect.ImmutableSet;
 
 import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.SourceVersion;
 
 @AutoService(Processor.class)
 public class DtoGenAnnotationProcessor extends BasicAnnotationProcessor {
 
+    static final String GRADLE_ISOLATING = "org.gradle.annotation.processing.isolating";
+    static final String GRADLE_AGGREGATING = "org.gradle.annotation.processing.aggregating";
+
+    /**
+     * null, or the listener which is notified about every generated DTO
+     */
+    private final GenerationListener generationListener;
+    private MainProcessingStep mainProcessingStep;
+
+    public DtoGenAnnotationProcessor() {
+        this(null);
+    }
+
+    /**
+     * @param generationListener used by the {@link WatchGenerator} to find the dependencies of the templates
+     */
+    DtoGenAnnotationProcessor(GenerationListener generationListener) {
+        this.generationListener = generationListener;
+    }
+
     @Override
     protected Iterable<? extends ProcessingStep> initSteps() {
-        return Collections.singletonList(new MainProcessingStep(processingEnv));
+        mainProcessingStep = new MainProcessingStep(processingEnv, generationListener);
+        return Collections.singletonList(mainProcessingStep);
+    }
+
+    @Override
+    protected void postRound(RoundEnvironment roundEnv) {
+        mainProcessingStep.postRound(roundEnv);
+    }
+
+    /**
+     * Also reports the Gradle incremental processing type (the descriptor is {@code dynamic}): the processor is
+     * isolating, unless the DTO index is generated which depends on all templates.
+     */
+    @Override
+    public Set<String> getSupportedOptions() {
+        return getSupportedOptions(processingEnv == null
+                ? Collections.<String, String>emptyMap() : processingEnv.getOptions());
+    }
+
+    static Set<String> getSupportedOptions(Map<String, String> processorOptions) {
+        boolean aggregating = ProcessorOptions.getStringOrNull(processorOptions, ProcessorOptions.REGISTRY) != null;
+        return ImmutableSet.<String>builder()
+                .addAll(ProcessorOptions.getSupportedOptions())
+                .add(aggregating ? GRADLE_AGGREGATING : GRADLE_ISOLATING)
+                .build();
     }
 
     @Override
@@ -0,0 +1,283 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Collects all generated DTOs of a compilation for the index resource and the registry class, see
+ * {@link ProcessorOptions#REGISTRY}.
+ * <p>
+ * The index resource {@value #INDEX_RESOURCE} contains one line per DTO with 3 tab-separated columns: the qualified
+ * name of the DTO, of its template and the comma-separated qualified names of its source types (i.e. the interfaces
+ * and the superclass of the template).
+ * </p>
+ * <p>
+ * The registry class contains the same information in hash maps, so that the DTOs can be found at runtime without
+ * classpath scanning. The registry only uses class names: looking up a DTO does not load any DTO class.
+ * </p>
+ */
+class DtoIndex {
+
+    static final String INDEX_RESOURCE = "META-INF/dtogen/index";
+
+    private final String registryClassName;
+    private final boolean reproducible;
+    /**
+     * key: the qualified name of the DTO (sorted, for reproducible output)
+     */
+    private final Map<String, Entry> entriesByDto = new TreeMap<>();
+    private boolean written;
+
+    DtoIndex(String registryClassName, boolean reproducible) {
+        this.registryClassName = registryClassName;
+        this.reproducible = reproducible;
+    }
+
+    /**
+     * adds the DTO: companion files (e.g. mappers) are ignored
+     *
+     * @throws IllegalStateException when the index has already been written, e.g. when another processor generates
+     *                               a template in a later round
+     */
+    void add(DtoSourceFile sourceFile) {
+        if (sourceFile.isCompanion()) {
+            return;
+        }
+        add(sourceFile.getTemplate(), sourceFile.getFileName(), sourceFile.getSourceTypes()
+                , sourceFile.isProjection());
+    }
+
+    /**
+     * adds a DTO which is not generated in this compilation, e.g. the DTO of an unchanged template of an
+     * incremental build
+     *
+     * @param dtoClassName the qualified name of the DTO
+     * @throws IllegalStateException when the index has already been written
+     */
+    void add(TypeElement template, String dtoClassName, List<TypeElement> sourceTypes, boolean projection) {
+        if (written) {
+            throw new IllegalStateException("The DTO registry " + registryClassName
+                    + " has already been written in a previous round");
+        }
+        List<String> sourceTypeNames = new ArrayList<>();
+        for (TypeElement sourceType : sourceTypes) {
+            sourceTypeNames.add(sourceType.getQualifiedName().toString());
+        }
+        entriesByDto.put(dtoClassName, new Entry(template, sourceTypeNames, projection));
+    }
+
+    /**
+     * @return true when there are DTOs which have not been written yet
+     */
+    boolean hasPendingEntries() {
+        return !written && !entriesByDto.isEmpty();
+    }
+
+    /**
+     * writes the index resource and the registry class: this function must be called on the javac thread
+     */
+    void writeTo(Filer filer) throws IOException {
+        written = true;
+        // aggregating: the index depends on all templates
+        TypeElement[] templates = new TypeElement[entriesByDto.size()];
+        int i = 0;
+        for (Entry entry : entriesByDto.values()) {
+            templates[i++] = entry.template;
+        }
+
+        FileObject indexResource = filer.createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE
+                , templates);
+        try (Writer writer = indexResource.openWriter()) {
+            writer.write(getIndexContent());
+        }
+
+        JavaFile registryFile = buildRegistryFile();
+        JavaFileObject registrySourceFile = filer.createSourceFile(registryClassName, templates);
+        try (Writer writer = registrySourceFile.openWriter()) {
+            registryFile.writeTo(writer);
+        }
+    }
+
+    String getIndexContent() {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, Entry> dtoEntry : entriesByDto.entrySet()) {
+            Entry entry = dtoEntry.getValue();
+            result.append(dtoEntry.getKey())
+                    .append('\t').append(entry.template.getQualifiedName())
+                    .append('\t').append(String.join(",", entry.sourceTypeNames))
+                    .append('\n');
+        }
+        return result.toString();
+    }
+
+    JavaFile buildRegistryFile() {
+        ClassName registryClass = ClassName.bestGuess(registryClassName);
+        TypeName stringType = ClassName.get(String.class);
+        TypeName stringArrayType = TypeName.get(String[].class);
+        TypeName listOfStrings = ParameterizedTypeName.get(ClassName.get(List.class), stringType);
+
+        TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(registryClass)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addJavadoc("The DTOs that have been generated in this compilation: see also the resource {@code $L}\n"
+                        , INDEX_RESOURCE)
+                .addAnnotation(JavaPoetUtil.createGeneratedAnnotation(DtoConfig.class, INDEX_RESOURCE
+                        , !reproducible));
+
+        typeSpecBuilder.addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Map.class), stringType
+                , stringArrayType), "TEMPLATE_AND_SOURCES_BY_DTO", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T<>($L)", HashMap.class, getHashMapCapacity())
+                .build());
+        typeSpecBuilder.addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Map.class), stringType
+                , stringType), "DTO_BY_TEMPLATE", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T<>($L)", HashMap.class, getHashMapCapacity())
+                .build());
+
+        // the static initializer is split into register methods: otherwise we may hit the 64KB method size limit
+        MethodSplitter staticInitializer = MethodSplitter.statements("register");
+        boolean hasProjections = false;
+        for (Map.Entry<String, Entry> dtoEntry : entriesByDto.entrySet()) {
+            CodeBlock.Builder arguments = CodeBlock.builder()
+                    .add("$S, $S", dtoEntry.getKey(), dtoEntry.getValue().template.getQualifiedName());
+            for (String sourceTypeName : dtoEntry.getValue().sourceTypeNames) {
+                arguments.add(", $S", sourceTypeName);
+            }
+            // the template is mapped to its DTO: not to the projections
+            staticInitializer.addStatement("$N($L)", dtoEntry.getValue().projection ? "addProjection" : "add"
+                    , arguments.build());
+            hasProjections |= dtoEntry.getValue().projection;
+        }
+        typeSpecBuilder.addStaticBlock(staticInitializer.getCode());
+        typeSpecBuilder.addMethods(staticInitializer.getHelperMethods(Modifier.PRIVATE, Modifier.STATIC));
+
+        typeSpecBuilder.addMethod(MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE)
+                .build());
+
+        typeSpecBuilder.addMethod(MethodSpec.methodBuilder("add")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(stringType, "dto")
+                .addParameter(stringType, "template")
+                .addParameter(stringArrayType, "sources")
+                .varargs()
+                .addStatement("String[] templateAndSources = new String[sources.length + 1]")
+                .addStatement("templateAndSources[0] = template")
+                .addStatement("$T.arraycopy(sources, 0, templateAndSources, 1, sources.length)", System.class)
+                .addStatement("TEMPLATE_AND_SOURCES_BY_DTO.put(dto, templateAndSources)")
+                .addStatement("DTO_BY_TEMPLATE.put(template, dto)")
+                .build());
+        if (hasProjections) {
+            typeSpecBuilder.addMethod(MethodSpec.methodBuilder("addProjection")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .addParameter(stringType, "dto")
+                    .addParameter(stringType, "template")
+                    .addParameter(stringArrayType, "sources")
+                    .varargs()
+                    .addStatement("String[] templateAndSources = new String[sources.length + 1]")
+                    .addStatement("templateAndSources[0] = template")
+                    .addStatement("$T.arraycopy(sources, 0, templateAndSources, 1, sources.length)", System.class)
+                    .addStatement("TEMPLATE_AND_SOURCES_BY_DTO.put(dto, templateAndSources)")
+                    .build());
+        }
+
+        typeSpecBuilder.addMethod(MethodSpec.methodBuilder("getDtoClassNames")
+                .addJavadoc("@return the qualified names of all DTOs\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(ClassName.get(Set.class), stringType))
+                .addStatement("return $T.unmodifiableSet(TEMPLATE_AND_SOURCES_BY_DTO.keySet())", Collections.class)
+                .build());
+
+        typeSpecBuilder.addMethod(MethodSpec.methodBuilder("getTemplateClassNameOrNull")
+                .addJavadoc("@return the qualified name of the template of the DTO or null when the DTO is unknown\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(stringType)
+                .addParameter(stringType, "dtoClassName")
+                .addStatement("String[] templateAndSources = TEMPLATE_AND_SOURCES_BY_DTO.get(dtoClassName)")
+                .addStatement("return templateAndSources == null ? null : templateAndSources[0]")
+                .build());
+
+        typeSpecBuilder.addMethod(MethodSpec.methodBuilder("getSourceClassNames")
+                .addJavadoc("@return the qualified names of the source types (the interfaces and the superclass of "
+                        + "the template) of the DTO or an empty list when the DTO is unknown\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(listOfStrings)
+                .addParameter(stringType, "dtoClassName")
+                .addStatement("String[] templateAndSources = TEMPLATE_AND_SOURCES_BY_DTO.get(dtoClassName)")
+                .beginControlFlow("if (templateAndSources == null)")
+                .addStatement("return $T.emptyList()", Collections.class)
+                .endControlFlow()
+                .addStatement("return $T.unmodifiableList($T.asList(templateAndSources).subList(1, "
+                        + "templateAndSources.length))", Collections.class, Arrays.class)
+                .build());
+
+        typeSpecBuilder.addMethod(MethodSpec.methodBuilder("getDtoClassNameOrNull")
+                .addJavadoc("@return the qualified name of the DTO of the template (not of its projections) or null "
+                        + "when the template is unknown\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(stringType)
+                .addParameter(stringType, "templateClassName")
+                .addStatement("return DTO_BY_TEMPLATE.get(templateClassName)")
+                .build());
+
+        return JavaFile.builder(registryClass.packageName(), typeSpecBuilder.build())
+                .skipJavaLangImports(true)
+                .build();
+    }
+
+    /**
+     * @return the initial capacity of a hash map that will not be resized
+     */
+    private int getHashMapCapacity() {
+        return (int) (entriesByDto.size() / 0.75f) + 1;
+    }
+
+    private static class Entry {
+        private final TypeElement template;
+        private final List<String> sourceTypeNames;
+        private final boolean projection;
+
+        private Entry(TypeElement template, List<String> sourceTypeNames, boolean projection) {
+            this.template = template;
+            this.sourceTypeNames = sourceTypeNames;
+            this.projection = projection;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+
+/**
+ * A source file for a template which is detached from the javac model.
+ * <p>
+ * All information from the javac model is collected on the javac thread (see {@link DtoConfigElementProcessor}).
+ * Then {@link #render()} builds the type and renders the java source code. Rendering only uses JavaPoet
+ * objects, so the source files of a round can be rendered in parallel.
+ * Finally {@link #writeTo(Filer)} must be called on the javac thread again.
+ * </p>
+ * <p>
+ * Very wide templates are not rendered but streamed: the {@link SourceWriter} writes the source code directly to
+ * the filer in {@link #writeTo(Filer)}, see {@link ProcessorOptions#STREAMING_THRESHOLD}.
+ * </p>
+ */
+class DtoSourceFile {
+
+    /**
+     * Writes the complete source code of a streamed source file: this function must be called on the javac thread
+     */
+    interface SourceWriter {
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    private final TypeElement template;
+    private final List<TypeElement> sourceTypes;
+    private final String fileName;
+    private final String packageName;
+    private final TypeSpec.Builder typeSpecBuilder;
+    private final String fingerprint;
+    private final TemplateStats stats;
+    private final SourceWriter sourceWriter;
+    private final boolean companion;
+
+    private String content;
+
+    /**
+     * @param fileName    the qualified name of the generated type
+     * @param fingerprint the fingerprint for the {@link GeneratedSourceCache} or null
+     */
+    DtoSourceFile(TypeElement template, List<TypeElement> sourceTypes, String fileName, String packageName
+            , TypeSpec.Builder typeSpecBuilder, String fingerprint, TemplateStats stats) {
+        this(template, sourceTypes, fileName, packageName, typeSpecBuilder, fingerprint, stats, null, false);
+    }
+
+    private DtoSourceFile(TypeElement template, List<TypeElement> sourceTypes, String fileName, String packageName
+            , TypeSpec.Builder typeSpecBuilder, String fingerprint, TemplateStats stats, SourceWriter sourceWriter
+            , boolean companion) {
+        this.template = template;
+        this.sourceTypes = sourceTypes;
+        this.fileName = fileName;
+        this.packageName = packageName;
+        this.typeSpecBuilder = typeSpecBuilder;
+        this.fingerprint = fingerprint;
+        this.stats = stats;
+        this.sourceWriter = sourceWriter;
+        this.companion = companion;
+    }
+
+    /**
+     * @return a source file which is not rendered in memory: the source writer will directly write to the filer
+     */
+    static DtoSourceFile streaming(TypeElement template, List<TypeElement> sourceTypes, String fileName
+            , SourceWriter sourceWriter, TemplateStats stats) {
+        return new DtoSourceFile(template, sourceTypes, fileName, null, null, null, stats, sourceWriter, false);
+    }
+
+    /**
+     * @return a source file which belongs to a DTO, but is not a DTO itself: e.g. the mapper of the DTO
+     */
+    static DtoSourceFile companion(TypeElement template, List<TypeElement> sourceTypes, String fileName
+            , String packageName, TypeSpec.Builder typeSpecBuilder, String fingerprint, TemplateStats stats) {
+        return new DtoSourceFile(template, sourceTypes, fileName, packageName, typeSpecBuilder, fingerprint, stats
+                , null, true);
+    }
+
+    /**
+     * @return a source file with the source code from the {@link GeneratedSourceCache}: there is nothing to render
+     */
+    static DtoSourceFile fromCache(TypeElement template, List<TypeElement> sourceTypes, String fileName
+            , String content, TemplateStats stats, boolean companion) {
+        DtoSourceFile result = new DtoSourceFile(template, sourceTypes, fileName, null, null, null, stats, null
+                , companion);
+        result.content = content;
+        return result;
+    }
+
+    /**
+     * @return the template for which this file is generated
+     */
+    TypeElement getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return true when this file belongs to a DTO, but is not a DTO itself: e.g. the mapper of the DTO
+     */
+    boolean isCompanion() {
+        return companion;
+    }
+
+    /**
+     * @return true when this is the DTO of a projection of the template, see {@link DtoConfig#projections()}
+     */
+    boolean isProjection() {
+        return !fileName.equals(DtoConfigElementProcessor.getTargetClassName(template));
+    }
+
+    /**
+     * @return the interfaces and the superclass of the template
+     */
+    List<TypeElement> getSourceTypes() {
+        return sourceTypes;
+    }
+
+    /**
+     * @return the qualified name of the generated type
+     */
+    String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return the fingerprint for the {@link GeneratedSourceCache} or null
+     */
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the rendered source code or null (e.g. for streamed source files)
+     */
+    String getContent() {
+        return content;
+    }
+
+    TemplateStats getStats() {
+        return stats;
+    }
+
+    boolean isFromCache() {
+        return typeSpecBuilder == null && sourceWriter == null;
+    }
+
+    boolean isStreaming() {
+        return sourceWriter != null;
+    }
+
+    /**
+     * Builds the type and renders the java source code: this function may be called on any thread
+     */
+    void render() {
+        if (isFromCache() || isStreaming()) {
+            return;
+        }
+        long start = System.nanoTime();
+        TypeSpec typeSpec = typeSpecBuilder.build();
+        long typeSpecEnd = System.nanoTime();
+        stats.addTypeSpecNanos(typeSpecEnd - start);
+
+        content = JavaFile.builder(packageName, typeSpec)
+                .skipJavaLangImports(true)
+                .build()
+                .toString();
+        stats.addRenderNanos(System.nanoTime() - typeSpecEnd);
+    }
+
+    /**
+     * Writes the rendered source code with the filer: this function must be called on the javac thread
+     *
+     * @see JavaFile#writeTo(Filer)
+     */
+    void writeTo(Filer filer) throws IOException {
+        if (content == null && !isStreaming()) {
+            throw new IllegalStateException("the source file has not been rendered");
+        }
+        /* the template is the only originating element: Gradle requires exactly one originating element per
+         * generated file for isolating annotation processors.
+         * changes of the superclass or the interfaces are still handled, because Gradle will also reprocess the
+         * template when one of its dependencies changes
+         */
+        JavaFileObject filerSourceFile = filer.createSourceFile(fileName, template);
+        try (Writer writer = filerSourceFile.openWriter()) {
+            if (isStreaming()) {
+                sourceWriter.writeTo(writer);
+            } else {
+                writer.write(content);
+            }
+        } catch (Exception e) {
+            try {
+                filerSourceFile.delete();
+            } catch (Exception ignored) {
+            }
+            throw e;
+        }
+    }
+}
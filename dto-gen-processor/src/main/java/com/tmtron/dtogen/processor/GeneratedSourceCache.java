@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * An on-disk cache for the rendered source files, see {@link ProcessorOptions#CACHE_DIR}.
+ * <p>
+ * Each cache entry is stored in its own file: the first line contains the fingerprint and the remaining lines
+ * contain the rendered source code. The fingerprint is calculated over
+ * <ul>
+ * <li>the version of the annotation processor</li>
+ * <li>the processor options which change the output</li>
+ * <li>the source version of the compilation, e.g. records are only generated for 16 or newer</li>
+ * <li>the source code of the template</li>
+ * <li>the member signatures of the sources of the template</li>
+ * </ul>
+ * When the fingerprint of a template is unchanged, the cached source code is used and the template is not
+ * processed again.
+ * </p>
+ */
+class GeneratedSourceCache {
+
+    /**
+     * must be incremented whenever the format of the cache files changes
+     */
+    private static final int CACHE_FORMAT_VERSION = 1;
+    private static final String FINGERPRINT_PREFIX = "// dtogen-fingerprint: ";
+    private static final String CACHE_FILE_EXTENSION = ".java.cache";
+
+    private final Path cacheDirectory;
+    private final String processorVersion;
+
+    GeneratedSourceCache(Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+        this.processorVersion = getProcessorVersion();
+    }
+
+    /**
+     * @param fileName the qualified name of the generated type
+     * @return the cached source code or null, when there is no cache entry with this fingerprint
+     */
+    String getOrNull(String fileName, String fingerprint) {
+        Path cacheFile = getCacheFile(fileName);
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            String firstLine = reader.readLine();
+            if (firstLine == null || !firstLine.equals(FINGERPRINT_PREFIX + fingerprint)) {
+                return null;
+            }
+            StringBuilder content = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                content.append(buffer, 0, read);
+            }
+            return content.toString();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // a damaged cache entry is just a cache miss
+            return null;
+        }
+    }
+
+    /**
+     * Stores the source code: the cache file is replaced atomically, so that multiple builds can share the
+     * cache directory
+     */
+    void put(String fileName, String fingerprint, String content) throws IOException {
+        Files.createDirectories(cacheDirectory);
+        Path tempFile = Files.createTempFile(cacheDirectory, fileName, ".tmp");
+        try {
+            Files.write(tempFile, (FINGERPRINT_PREFIX + fingerprint + "\n" + content).getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile, getCacheFile(fileName), StandardCopyOption.REPLACE_EXISTING
+                    , StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private Path getCacheFile(String fileName) {
+        return cacheDirectory.resolve(fileName + CACHE_FILE_EXTENSION);
+    }
+
+    /**
+     * @param templateSourceCode the source code of the compilation unit of the template
+     * @param sources            the sources of the template (superclass and interfaces)
+     * @param sourceHierarchy    the method tables of the sources: including the inherited methods
+     * @param options            the processor options
+     * @param sourceVersion      the source version of the compilation
+     * @return the fingerprint as hex string
+     */
+    String getFingerprint(TypeElement template, CharSequence templateSourceCode, List<TypeElement> sources
+            , SourceHierarchy sourceHierarchy, ProcessorOptions options, SourceVersion sourceVersion) {
+        MessageDigest digest = createDigest();
+        update(digest, String.valueOf(CACHE_FORMAT_VERSION));
+        update(digest, processorVersion);
+        update(digest, String.valueOf(options.isReproducible()));
+        // the options which change the content of the generated files
+        update(digest, options.getTarget().name());
+        update(digest, String.valueOf(options.isBulkMappers()));
+        update(digest, String.valueOf(options.getParallelMapperThreshold()));
+        update(digest, sourceVersion.name());
+        update(digest, template.getQualifiedName());
+        update(digest, templateSourceCode);
+        for (TypeElement source : sources) {
+            update(digest, source.getQualifiedName());
+            for (Element member : sourceHierarchy.getMethods(source)) {
+                update(digest, member.getEnclosingElement().toString());
+                update(digest, member.getKind().name());
+                update(digest, member.getModifiers().toString());
+                update(digest, member.getSimpleName());
+                update(digest, member.asType().toString());
+                for (AnnotationMirror annotationMirror : member.getAnnotationMirrors()) {
+                    update(digest, annotationMirror.toString());
+                }
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, CharSequence value) {
+        digest.update(value.toString().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16));
+            result.append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return the implementation version of the processor jar or, for snapshot versions, a hash of the processor
+     * jar
+     */
+    private static String getProcessorVersion() {
+        String implementationVersion = GeneratedSourceCache.class.getPackage().getImplementationVersion();
+        if (implementationVersion != null && !implementationVersion.endsWith("-SNAPSHOT")) {
+            return implementationVersion;
+        }
+        CodeSource codeSource = GeneratedSourceCache.class.getProtectionDomain().getCodeSource();
+        if (codeSource != null && codeSource.getLocation() != null) {
+            try {
+                Path location = Paths.get(codeSource.getLocation().toURI());
+                if (Files.isRegularFile(location)) {
+                    return toHex(createDigest().digest(Files.readAllBytes(location)));
+                }
+            } catch (URISyntaxException | IOException | RuntimeException e) {
+                // fall through
+            }
+        }
+        // e.g. when the processor is loaded from a classes directory
+        return "development";
+    }
+}
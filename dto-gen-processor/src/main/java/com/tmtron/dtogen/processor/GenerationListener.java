@@ -0,0 +1,34 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import java.util.List;
+
+import javax.lang.model.element.TypeElement;
+
+/**
+ * Is notified about every DTO that has been written by the {@link DtoGenAnnotationProcessor}
+ */
+interface GenerationListener {
+
+    /**
+     * This function is called on the javac thread.
+     *
+     * @param template    the template of the DTO
+     * @param sourceTypes the interfaces and the superclass of the template which have been copied to the DTO
+     */
+    void dtoGenerated(TypeElement template, List<TypeElement> sourceTypes);
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * The members of a DTO which is generated as final immutable class, see {@link ProcessorOptions.Target#IMMUTABLE}:
+ * <ul>
+ * <li>the abstract accessors (without parameters) are implemented with final fields, which are initialized by the
+ * constructor</li>
+ * <li>the static fields, the final instance fields with an initializer and the methods with a body are copied</li>
+ * <li>equals compares the fields of the accessors and hashCode is computed on the first call and then cached: unless
+ * the template declares these methods</li>
+ * </ul>
+ * Other members (e.g. mutable instance fields) are not supported in an immutable class.
+ */
+class ImmutableLayout implements MemberSink {
+
+    private static final String HASH_CODE_FIELD = "cachedHashCode";
+
+    private final List<MethodSpec> accessors = new ArrayList<>();
+    private final MemberList body = new MemberList();
+    private final List<String> unsupportedMembers = new ArrayList<>();
+    private int parameterSlots = 1;
+    private boolean declaresEquals;
+    private boolean declaresHashCode;
+
+    @Override
+    public void addField(FieldSpec fieldSpec) {
+        if (fieldSpec.hasModifier(Modifier.STATIC)
+                || (fieldSpec.hasModifier(Modifier.FINAL) && !fieldSpec.initializer.isEmpty())) {
+            body.addField(fieldSpec);
+        } else {
+            unsupportedMembers.add("field " + fieldSpec.name);
+        }
+    }
+
+    @Override
+    public void addMethod(MethodSpec methodSpec) {
+        if (!methodSpec.hasModifier(Modifier.ABSTRACT)) {
+            body.addMethod(methodSpec);
+            declaresEquals |= isEquals(methodSpec);
+            declaresHashCode |= isHashCode(methodSpec);
+        } else if (methodSpec.parameters.isEmpty() && methodSpec.typeVariables.isEmpty()
+                && !methodSpec.returnType.equals(TypeName.VOID)) {
+            accessors.add(methodSpec);
+            parameterSlots += JavaPoetUtil.getParameterSlots(methodSpec.returnType);
+        } else {
+            unsupportedMembers.add("method " + methodSpec.name);
+        }
+    }
+
+    /**
+     * @return the members which cannot be generated in an immutable class, e.g. "field count": when the list is not
+     * empty, the abstract class must be generated instead
+     */
+    List<String> getUnsupportedMembers() {
+        if (parameterSlots <= JavaPoetUtil.MAX_PARAMETER_SLOTS) {
+            return unsupportedMembers;
+        }
+        List<String> result = new ArrayList<>(unsupportedMembers);
+        result.add("constructor (the accessors need " + parameterSlots + " of max. "
+                + JavaPoetUtil.MAX_PARAMETER_SLOTS + " parameter slots)");
+        return result;
+    }
+
+    /**
+     * @param modifiers the modifiers of the template: abstract is replaced by final
+     */
+    TypeSpec.Builder buildTypeSpec(ClassName className, List<AnnotationSpec> annotationSpecs, Set<Modifier> modifiers) {
+        Set<Modifier> classModifiers = EnumSet.noneOf(Modifier.class);
+        classModifiers.addAll(modifiers);
+        classModifiers.remove(Modifier.ABSTRACT);
+        classModifiers.add(Modifier.FINAL);
+        TypeSpec.Builder result = TypeSpec.classBuilder(className)
+                .addModifiers(JavaPoetUtil.modifiersAsArray(classModifiers))
+                .addAnnotations(annotationSpecs);
+
+        MethodSpec.Builder constructor = MethodSpec.constructorBuilder();
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            constructor.addModifiers(Modifier.PUBLIC);
+        }
+        for (MethodSpec accessor : accessors) {
+            result.addField(accessor.returnType, accessor.name, Modifier.PRIVATE, Modifier.FINAL);
+            constructor.addParameter(accessor.returnType, accessor.name)
+                    .addStatement("this.$N = $N", accessor.name, accessor.name);
+        }
+        if (!declaresHashCode) {
+            // 0: the hash code has not been computed yet
+            result.addField(TypeName.INT, HASH_CODE_FIELD, Modifier.PRIVATE);
+        }
+        result.addMethod(constructor.build());
+
+        for (MethodSpec accessor : accessors) {
+            result.addMethod(JavaPoetUtil.implementAccessor(accessor));
+        }
+        body.replayTo(MemberSink.of(result));
+        if (!declaresEquals) {
+            addEquals(result, className);
+        }
+        if (!declaresHashCode) {
+            addHashCode(result);
+        }
+        return result;
+    }
+
+    private void addEquals(TypeSpec.Builder result, ClassName className) {
+        MethodSplitter equalFields = MethodSplitter.conjunction("equalFields")
+                .addParameter(className, "other");
+        for (MethodSpec accessor : accessors) {
+            equalFields.addCode(CodeBlock.builder()
+                    .beginControlFlow("if ($L)", getNotEqualCondition(accessor.returnType, accessor.name))
+                    .addStatement("return false")
+                    .endControlFlow()
+                    .build());
+        }
+        result.addMethod(MethodSpec.methodBuilder("equals")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(TypeName.BOOLEAN)
+                .addParameter(Object.class, "object")
+                .beginControlFlow("if (this == object)")
+                .addStatement("return true")
+                .endControlFlow()
+                .beginControlFlow("if (!(object instanceof $T))", className)
+                .addStatement("return false")
+                .endControlFlow()
+                .addStatement("$T other = ($T) object", className, className)
+                .addCode(equalFields.getCode())
+                .addStatement("return true")
+                .build());
+        result.addMethods(equalFields.getHelperMethods(Modifier.PRIVATE));
+    }
+
+    private void addHashCode(TypeSpec.Builder result) {
+        MethodSplitter hashFields = MethodSplitter.accumulator("hashFields", TypeName.INT, "result");
+        for (MethodSpec accessor : accessors) {
+            hashFields.addStatement("result = 31 * result + $L", getHashCode(accessor.returnType, accessor.name));
+        }
+        result.addMethod(MethodSpec.methodBuilder("hashCode")
+                .addJavadoc("The hash code is computed on the first call: the DTO is immutable.\n")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(TypeName.INT)
+                .addStatement("int result = $N", HASH_CODE_FIELD)
+                .beginControlFlow("if (result == 0)")
+                .addStatement("result = 1")
+                .addCode(hashFields.getCode())
+                .addStatement("$N = result", HASH_CODE_FIELD)
+                .endControlFlow()
+                .addStatement("return result")
+                .build());
+        result.addMethods(hashFields.getHelperMethods(Modifier.PRIVATE));
+    }
+
+    private static boolean isEquals(MethodSpec methodSpec) {
+        return methodSpec.name.equals("equals") && methodSpec.parameters.size() == 1
+                && methodSpec.parameters.get(0).type.equals(TypeName.OBJECT);
+    }
+
+    private static boolean isHashCode(MethodSpec methodSpec) {
+        return methodSpec.name.equals("hashCode") && methodSpec.parameters.isEmpty();
+    }
+
+    /**
+     * @return the condition which is true when the field of this and other are not equal: primitives are not boxed.
+     * The fields are qualified, because an accessor may have the name of a local variable (e.g. "other")
+     */
+    private static CodeBlock getNotEqualCondition(TypeName type, String field) {
+        if (type.equals(TypeName.FLOAT)) {
+            return CodeBlock.of("$T.compare(this.$N, other.$N) != 0", Float.class, field, field);
+        } else if (type.equals(TypeName.DOUBLE)) {
+            return CodeBlock.of("$T.compare(this.$N, other.$N) != 0", Double.class, field, field);
+        } else if (type.isPrimitive()) {
+            return CodeBlock.of("this.$N != other.$N", field, field);
+        } else if (type instanceof ArrayTypeName) {
+            return CodeBlock.of("!$T.$N(this.$N, other.$N)", Arrays.class
+                    , isNestedArray(type) ? "deepEquals" : "equals", field, field);
+        }
+        return CodeBlock.of("!$T.equals(this.$N, other.$N)", Objects.class, field, field);
+    }
+
+    /**
+     * @return the hash code of the field: primitives are not boxed
+     */
+    private static CodeBlock getHashCode(TypeName type, String field) {
+        if (type.equals(TypeName.BOOLEAN)) {
+            return CodeBlock.of("$T.hashCode(this.$N)", Boolean.class, field);
+        } else if (type.equals(TypeName.LONG)) {
+            return CodeBlock.of("$T.hashCode(this.$N)", Long.class, field);
+        } else if (type.equals(TypeName.FLOAT)) {
+            return CodeBlock.of("$T.hashCode(this.$N)", Float.class, field);
+        } else if (type.equals(TypeName.DOUBLE)) {
+            return CodeBlock.of("$T.hashCode(this.$N)", Double.class, field);
+        } else if (type.isPrimitive()) {
+            // byte, short, char and int
+            return CodeBlock.of("this.$N", field);
+        } else if (type instanceof ArrayTypeName) {
+            return CodeBlock.of("$T.$N(this.$N)", Arrays.class, isNestedArray(type) ? "deepHashCode" : "hashCode"
+                    , field);
+        }
+        return CodeBlock.of("$T.hashCode(this.$N)", Objects.class, field);
+    }
+
+    private static boolean isNestedArray(TypeName type) {
+        return ((ArrayTypeName) type).componentType instanceof ArrayTypeName;
+    }
+}
@@ -16,6 +16,7 @@
 package com.tmtron.dtogen.processor;
 
 import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
@@ -25,31 +26,84 @@ import com.squareup.javapoet.TypeVariableName;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Generated;
 import javax.lang.model.AnnotatedConstruct;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
-import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.TypeParameterElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.TypeVariable;
-
+import javax.lang.model.util.Elements;
+
+/**
+ * Converts the javac model to JavaPoet objects.
+ * <p>
+ * The conversions are cached: the same types, parameters and annotations are converted only once, even when many
+ * templates share the same sources. The mirrors and elements are only valid in one round, so a new instance must
+ * be used for each round (see {@link RoundContext}) and it must only be used on the javac thread.
+ * </p>
+ */
 public class JavaPoetUtil {
 
-    private static final List<String> dtoGenAnnotationClasses = Arrays.asList(
-            DtoConfig.class.getSimpleName()
-            , DtoRename.class.getSimpleName()
-            , DtoIgnore.class.getSimpleName());
+    /**
+     * the JVM limit for the parameter slots of a method: {@code this} needs one slot, long and double need 2 slots
+     */
+    static final int MAX_PARAMETER_SLOTS = 255;
 
-    public static List<ParameterSpec> getParametersOf(ExecutableElement method) {
+    /**
+     * the type elements of our own annotations
+     */
+    private final Set<Element> dtoGenAnnotationTypes = new HashSet<>();
+
+    /* the mirrors and elements of the javac model are not guaranteed to implement equals/hashCode:
+     * they are keyed by identity
+     */
+    private final Map<TypeMirror, TypeName> typeNames = new IdentityHashMap<>();
+    private final Map<VariableElement, ParameterSpec> parameterSpecs = new IdentityHashMap<>();
+    private final Map<AnnotationMirror, AnnotationSpec> annotationSpecs = new IdentityHashMap<>();
+    private final Map<AnnotatedConstruct, List<AnnotationSpec>> annotationSpecsOfConstructs = new IdentityHashMap<>();
+
+    public JavaPoetUtil(Elements elements) {
+        for (Class<?> dtoGenAnnotationClass : Arrays.asList(DtoConfig.class, DtoRename.class, DtoIgnore.class)) {
+            TypeElement typeElement = elements.getTypeElement(dtoGenAnnotationClass.getCanonicalName());
+            if (typeElement != null) {
+                dtoGenAnnotationTypes.add(typeElement);
+            }
+        }
+    }
+
+    public TypeName getTypeName(TypeMirror typeMirror) {
+        TypeName result = typeNames.get(typeMirror);
+        if (result == null) {
+            result = TypeName.get(typeMirror);
+            typeNames.put(typeMirror, result);
+        }
+        return result;
+    }
+
+    public List<ParameterSpec> getParametersOf(ExecutableElement method) {
         List<ParameterSpec> result = new ArrayList<>();
         for (VariableElement parameter : method.getParameters()) {
-            result.add(ParameterSpec.get(parameter));
+            ParameterSpec parameterSpec = parameterSpecs.get(parameter);
+            if (parameterSpec == null) {
+                parameterSpec = ParameterSpec.builder(getTypeName(parameter.asType())
+                        , parameter.getSimpleName().toString())
+                        .addModifiers(parameter.getModifiers())
+                        .build();
+                parameterSpecs.put(parameter, parameterSpec);
+            }
+            result.add(parameterSpec);
         }
         return result;
     }
@@ -59,12 +113,12 @@ public class JavaPoetUtil {
      *
      * @see MethodSpec#overriding(ExecutableElement)
      */
-    public static MethodSpec.Builder copyMethod(ExecutableElement method) {
+    public MethodSpec.Builder copyMethod(ExecutableElement method) {
         String targetMethodName = method.getSimpleName().toString();
         return copyMethod(method, targetMethodName);
     }
 
-    public static MethodSpec.Builder copyMethod(ExecutableElement method, String targetMethodName) {
+    public MethodSpec.Builder copyMethod(ExecutableElement method, String targetMethodName) {
         Set<Modifier> modifiers = method.getModifiers();
 
         MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(targetMethodName);
@@ -75,12 +129,12 @@ public class JavaPoetUtil {
             methodBuilder.addTypeVariable(TypeVariableName.get(var));
         }
 
-        methodBuilder.returns(TypeName.get(method.getReturnType()));
+        methodBuilder.returns(getTypeName(method.getReturnType()));
         methodBuilder.addParameters(getParametersOf(method));
         methodBuilder.varargs(method.isVarArgs());
 
         for (TypeMirror thrownType : method.getThrownTypes()) {
-            methodBuilder.addException(TypeName.get(thrownType));
+            methodBuilder.addException(getTypeName(thrownType));
         }
 
         // copy all annotations, ..
@@ -89,21 +143,33 @@ public class JavaPoetUtil {
         return methodBuilder;
     }
 
-    private static boolean isDtoGenAnnotation(AnnotationMirror annotationMirror) {
-        Name simpleName = annotationMirror.getAnnotationType().asElement().getSimpleName();
-        return dtoGenAnnotationClasses.contains(simpleName.toString());
+    private boolean isDtoGenAnnotation(AnnotationMirror annotationMirror) {
+        return dtoGenAnnotationTypes.contains(annotationMirror.getAnnotationType().asElement());
     }
 
-    public static List<AnnotationSpec> getAnnotationSpecs(AnnotatedConstruct annotatedConstruct) {
-        List<AnnotationSpec> result = new ArrayList<>();
+    /**
+     * @return an unmodifiable list of the annotations
+     */
+    public List<AnnotationSpec> getAnnotationSpecs(AnnotatedConstruct annotatedConstruct) {
+        List<AnnotationSpec> result = annotationSpecsOfConstructs.get(annotatedConstruct);
+        if (result != null) {
+            return result;
+        }
+        result = new ArrayList<>();
         List<? extends AnnotationMirror> annotationMirrors = annotatedConstruct.getAnnotationMirrors();
         for (AnnotationMirror annotationMirror : annotationMirrors) {
-            // .. except for the our own annotations which are all in the same package
+            // .. except for the our own annotations
             if (!isDtoGenAnnotation(annotationMirror)) {
-                AnnotationSpec annotationSpec = AnnotationSpec.get(annotationMirror);
+                AnnotationSpec annotationSpec = annotationSpecs.get(annotationMirror);
+                if (annotationSpec == null) {
+                    annotationSpec = AnnotationSpec.get(annotationMirror);
+                    annotationSpecs.put(annotationMirror, annotationSpec);
+                }
                 result.add(annotationSpec);
             }
         }
+        result = Collections.unmodifiableList(result);
+        annotationSpecsOfConstructs.put(annotatedConstruct, result);
         return result;
     }
 
@@ -111,11 +177,11 @@ public class JavaPoetUtil {
         return modifiers.toArray(new Modifier[0]);
     }
 
-    public static FieldSpec.Builder copyField(VariableElement variableElement) {
+    public FieldSpec.Builder copyField(VariableElement variableElement) {
         String fieldName = variableElement.getSimpleName().toString();
         Modifier[] modifiers = modifiersAsArray(variableElement.getModifiers());
 
-        TypeName typeName = TypeName.get(variableElement.asType());
+        TypeName typeName = getTypeName(variableElement.asType());
         FieldSpec.Builder builder = FieldSpec.builder(typeName, fieldName, modifiers);
         builder.addAnnotations(getAnnotationSpecs(variableElement));
 
@@ -133,13 +199,16 @@ public class JavaPoetUtil {
      * </code></pre>
      *
      * @param annotationProcessorClass the class-name will be used for the value item
+     * @param withDate                 when false, the date item is omitted
      */
     public static AnnotationSpec createGeneratedAnnotation(Class<?> annotationProcessorClass
-            , String originClassName) {
-        String dateString = DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(AnnotationProcessingUtil.now());
+            , String originClassName, boolean withDate) {
         AnnotationSpec.Builder annotationSpecBuilder = AnnotationSpec.builder(Generated.class)
-                .addMember("value", "$S", annotationProcessorClass.getCanonicalName())
-                .addMember("date", "$S", dateString);
+                .addMember("value", "$S", annotationProcessorClass.getCanonicalName());
+        if (withDate) {
+            String dateString = DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(AnnotationProcessingUtil.now());
+            annotationSpecBuilder.addMember("date", "$S", dateString);
+        }
 
         StringBuilder sbOrigin = new StringBuilder();
         String commentsString = "origin=" + originClassName;
@@ -149,4 +218,32 @@ public class JavaPoetUtil {
         return annotationSpecBuilder.build();
     }
 
+    /**
+     * @param accessor an abstract accessor which is copied to a DTO that does not extend the sources of the template:
+     *                 so {@code @Override} is removed
+     * @return the accessor with the same signature which returns the field with the same name
+     */
+    static MethodSpec implementAccessor(MethodSpec accessor) {
+        MethodSpec.Builder result = MethodSpec.methodBuilder(accessor.name)
+                .returns(accessor.returnType);
+        for (AnnotationSpec annotationSpec : accessor.annotations) {
+            if (!annotationSpec.type.equals(ClassName.get(Override.class))) {
+                result.addAnnotation(annotationSpec);
+            }
+        }
+        for (Modifier modifier : accessor.modifiers) {
+            if (modifier != Modifier.ABSTRACT) {
+                result.addModifiers(modifier);
+            }
+        }
+        return result.addStatement("return $N", accessor.name).build();
+    }
+
+    /**
+     * @return the number of parameter slots of a parameter with this type, see {@link #MAX_PARAMETER_SLOTS}
+     */
+    static int getParameterSlots(TypeName type) {
+        return type.equals(TypeName.LONG) || type.equals(TypeName.DOUBLE) ? 2 : 1;
+    }
+
 }
@@ -0,0 +1,623 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * Generates the JSON writer of a DTO, see {@link ProcessorOptions#JSON_WRITERS}: e.g.
+ * {@code UserDtoJsonWriter.writeJson(userDto, appendable)} calls each accessor of the DTO directly (no reflection)
+ * and writes the values as JSON object to an {@link Appendable} or as UTF-8 to a {@link ByteBuffer}.
+ * <p>
+ * The names of the JSON properties are the names of the accessors: they are encoded once (including the quotes and
+ * the colon) when the writer class is initialized. Primitive values are not boxed. Arrays and iterables are written
+ * as JSON arrays. The values of the other types are written as JSON strings: enums with their name and other objects
+ * with their {@code toString()} value, when the class (or a superclass) declares it.
+ * </p>
+ * <p>
+ * The other accessors (e.g. maps, nested DTOs or type variables) are not supported, see
+ * {@link #getUnsupportedAccessors()}.
+ * </p>
+ */
+class JsonWriterGenerator {
+
+    static final String WRITER_SUFFIX = "JsonWriter";
+
+    private static final ClassName STRING = ClassName.get(String.class);
+    private static final ClassName CHAR_SEQUENCE = ClassName.get(CharSequence.class);
+    private static final TypeName APPENDABLE = ClassName.get(Appendable.class);
+    private static final TypeName BYTE_BUFFER = ClassName.get(ByteBuffer.class);
+    private static final TypeName BYTE_ARRAY = ArrayTypeName.of(TypeName.BYTE);
+
+    /**
+     * the kind of a declared type, which can only be determined with the javac model
+     */
+    enum DeclaredTypeKind {ENUM, ITERABLE, TO_STRING, OTHER}
+
+    /**
+     * how a value is written
+     */
+    private enum ValueKind {BOOLEAN, INTEGRAL, FLOAT, DOUBLE, CHAR, STRING, ENUM, TO_STRING, ARRAY, ITERABLE}
+
+    /**
+     * the type of a value and how it is written: arrays and iterables also have the type of their elements
+     */
+    private static final class ValueType {
+        final TypeName type;
+        final ValueKind kind;
+        final ValueType elementType;
+
+        ValueType(TypeName type, ValueKind kind, ValueType elementType) {
+            this.type = type;
+            this.kind = kind;
+            this.elementType = elementType;
+        }
+    }
+
+    private final ClassName dtoClassName;
+    private final Set<Modifier> dtoModifiers;
+    private final Function<ClassName, DeclaredTypeKind> declaredTypeKinds;
+    private final List<MethodSpec> accessors = new ArrayList<>();
+    private final List<ValueType> valueTypes = new ArrayList<>();
+    private final Set<ValueKind> usedKinds = EnumSet.noneOf(ValueKind.class);
+    /**
+     * the names of the methods which write the arrays and iterables (one pair per type)
+     */
+    private final Map<TypeName, String> arrayWriterNames = new LinkedHashMap<>();
+    private final Map<TypeName, ValueType> arrayTypes = new LinkedHashMap<>();
+    private final List<String> unsupportedAccessors = new ArrayList<>();
+
+    /**
+     * @param dtoModifiers      the modifiers of the template: the writer is public when the DTO is public
+     * @param declaredTypeKinds returns the kind of a declared type
+     */
+    JsonWriterGenerator(ClassName dtoClassName, Set<Modifier> dtoModifiers
+            , Function<ClassName, DeclaredTypeKind> declaredTypeKinds) {
+        this.dtoClassName = dtoClassName;
+        this.dtoModifiers = dtoModifiers;
+        this.declaredTypeKinds = declaredTypeKinds;
+    }
+
+    /**
+     * @param accessor an accessor of the DTO (without parameters): when its type cannot be written as JSON, it is
+     *                 added to the unsupported accessors
+     */
+    void addAccessor(MethodSpec accessor) {
+        ValueType valueType = getValueTypeOrNull(accessor.returnType);
+        if (valueType == null) {
+            unsupportedAccessors.add(accessor.name + " (" + accessor.returnType + ")");
+            return;
+        }
+        accessors.add(accessor);
+        valueTypes.add(valueType);
+        addUsedKinds(valueType);
+    }
+
+    /**
+     * @return the accessors whose values cannot be written as JSON: the writer must not be generated when the list
+     * is not empty
+     */
+    List<String> getUnsupportedAccessors() {
+        return Collections.unmodifiableList(unsupportedAccessors);
+    }
+
+    ClassName getWriterClassName() {
+        return dtoClassName.peerClass(dtoClassName.simpleName() + WRITER_SUFFIX);
+    }
+
+    TypeSpec.Builder build() {
+        TypeSpec.Builder result = TypeSpec.classBuilder(getWriterClassName())
+                .addModifiers(Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .build());
+        if (dtoModifiers.contains(Modifier.PUBLIC)) {
+            result.addModifiers(Modifier.PUBLIC);
+        }
+        addConstants(result);
+
+        MethodSplitter appendFields = MethodSplitter.accumulator("appendFields", TypeName.BOOLEAN, "comma")
+                .addParameter(dtoClassName, "dto")
+                .addParameter(APPENDABLE, "out")
+                .addParameter(TypeName.BOOLEAN, "omitNulls")
+                .addException(ClassName.get(IOException.class));
+        MethodSplitter putFields = MethodSplitter.accumulator("putFields", TypeName.BOOLEAN, "comma")
+                .addParameter(dtoClassName, "dto")
+                .addParameter(BYTE_BUFFER, "out")
+                .addParameter(TypeName.BOOLEAN, "omitNulls");
+        for (int i = 0; i < accessors.size(); i++) {
+            appendFields.addCode(getFieldCode(i, getAppendValue(valueTypes.get(i), "value" + i)
+                    , CodeBlock.of("out.append($S)", "null")));
+            putFields.addCode(getFieldCode(i, getPutValue(valueTypes.get(i), "value" + i)
+                    , CodeBlock.of("out.put(NULL_BYTES)")));
+        }
+
+        result.addMethod(MethodSpec.methodBuilder("writeJson")
+                .addJavadoc("writes the DTO as JSON object: null values are also written\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(dtoClassName, "dto")
+                .addParameter(APPENDABLE, "out")
+                .addException(IOException.class)
+                .addStatement("writeJson(dto, out, false)")
+                .build());
+        result.addMethod(MethodSpec.methodBuilder("writeJson")
+                .addJavadoc("writes the DTO as JSON object: {@code null} when the DTO is null\n\n"
+                        + "@param omitNulls true: the accessors which return null are not written\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(dtoClassName, "dto")
+                .addParameter(APPENDABLE, "out")
+                .addParameter(TypeName.BOOLEAN, "omitNulls")
+                .addException(IOException.class)
+                .beginControlFlow("if (dto == null)")
+                .addStatement("out.append($S)", "null")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("out.append('{')")
+                .addCode(getFieldsCode(appendFields))
+                .addStatement("out.append('}')")
+                .build());
+        result.addMethods(appendFields.getHelperMethods(Modifier.PRIVATE, Modifier.STATIC));
+
+        result.addMethod(MethodSpec.methodBuilder("writeJson")
+                .addJavadoc("writes the DTO as UTF-8 encoded JSON object at the position of the buffer: null values "
+                        + "are also written\n\n"
+                        + "@throws java.nio.BufferOverflowException when the remaining space of the buffer is not "
+                        + "sufficient\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(dtoClassName, "dto")
+                .addParameter(BYTE_BUFFER, "out")
+                .addStatement("writeJson(dto, out, false)")
+                .build());
+        result.addMethod(MethodSpec.methodBuilder("writeJson")
+                .addJavadoc("writes the DTO as UTF-8 encoded JSON object at the position of the buffer: {@code null} "
+                        + "when the DTO is null\n\n"
+                        + "@param omitNulls true: the accessors which return null are not written\n"
+                        + "@throws java.nio.BufferOverflowException when the remaining space of the buffer is not "
+                        + "sufficient\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(dtoClassName, "dto")
+                .addParameter(BYTE_BUFFER, "out")
+                .addParameter(TypeName.BOOLEAN, "omitNulls")
+                .beginControlFlow("if (dto == null)")
+                .addStatement("out.put(NULL_BYTES)")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("out.put((byte) '{')")
+                .addCode(getFieldsCode(putFields))
+                .addStatement("out.put((byte) '}')")
+                .build());
+        result.addMethods(putFields.getHelperMethods(Modifier.PRIVATE, Modifier.STATIC));
+
+        for (ValueType arrayType : arrayTypes.values()) {
+            addArrayWriters(result, arrayType);
+        }
+        addHelperMethods(result);
+        return result;
+    }
+
+    /**
+     * @return the value type or null when values of this type cannot be written as JSON
+     */
+    private ValueType getValueTypeOrNull(TypeName type) {
+        TypeName unboxed = type.isBoxedPrimitive() ? type.unbox() : type;
+        if (unboxed.equals(TypeName.BOOLEAN)) {
+            return new ValueType(type, ValueKind.BOOLEAN, null);
+        } else if (unboxed.equals(TypeName.BYTE) || unboxed.equals(TypeName.SHORT) || unboxed.equals(TypeName.INT)
+                || unboxed.equals(TypeName.LONG)) {
+            return new ValueType(type, ValueKind.INTEGRAL, null);
+        } else if (unboxed.equals(TypeName.FLOAT)) {
+            return new ValueType(type, ValueKind.FLOAT, null);
+        } else if (unboxed.equals(TypeName.DOUBLE)) {
+            return new ValueType(type, ValueKind.DOUBLE, null);
+        } else if (unboxed.equals(TypeName.CHAR)) {
+            return new ValueType(type, ValueKind.CHAR, null);
+        }
+        TypeName withoutAnnotations = type.withoutAnnotations();
+        if (withoutAnnotations.equals(STRING) || withoutAnnotations.equals(CHAR_SEQUENCE)) {
+            return new ValueType(type, ValueKind.STRING, null);
+        } else if (withoutAnnotations instanceof ArrayTypeName) {
+            return getContainerTypeOrNull(type, ValueKind.ARRAY, ((ArrayTypeName) withoutAnnotations).componentType);
+        } else if (withoutAnnotations instanceof ParameterizedTypeName) {
+            ParameterizedTypeName parameterizedType = (ParameterizedTypeName) withoutAnnotations;
+            if (parameterizedType.typeArguments.size() == 1
+                    && declaredTypeKinds.apply(parameterizedType.rawType) == DeclaredTypeKind.ITERABLE) {
+                return getContainerTypeOrNull(type, ValueKind.ITERABLE, parameterizedType.typeArguments.get(0));
+            }
+        } else if (withoutAnnotations instanceof ClassName) {
+            switch (declaredTypeKinds.apply((ClassName) withoutAnnotations)) {
+                case ENUM:
+                    return new ValueType(type, ValueKind.ENUM, null);
+                case TO_STRING:
+                    return new ValueType(type, ValueKind.TO_STRING, null);
+                default:
+                    // e.g. raw iterables, maps, nested DTOs
+                    return null;
+            }
+        }
+        // e.g. type variables
+        return null;
+    }
+
+    private ValueType getContainerTypeOrNull(TypeName type, ValueKind kind, TypeName elementTypeName) {
+        if (elementTypeName instanceof WildcardTypeName) {
+            // the lower bound of "? super T" is not the type of the elements: the upper bound is Object
+            elementTypeName = ((WildcardTypeName) elementTypeName).upperBounds.get(0);
+        }
+        ValueType elementType = getValueTypeOrNull(elementTypeName);
+        if (elementType == null) {
+            return null;
+        }
+        ValueType result = new ValueType(type, kind, elementType);
+        if (!arrayWriterNames.containsKey(type)) {
+            arrayWriterNames.put(type, "writeArray" + arrayWriterNames.size());
+            arrayTypes.put(type, result);
+        }
+        return result;
+    }
+
+    private void addUsedKinds(ValueType valueType) {
+        for (ValueType type = valueType; type != null; type = type.elementType) {
+            usedKinds.add(type.kind);
+        }
+    }
+
+    private boolean uses(ValueKind... kinds) {
+        for (ValueKind kind : kinds) {
+            if (usedKinds.contains(kind)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean usesStrings() {
+        return uses(ValueKind.CHAR, ValueKind.STRING, ValueKind.ENUM, ValueKind.TO_STRING);
+    }
+
+    private void addConstants(TypeSpec.Builder writer) {
+        if (!accessors.isEmpty()) {
+            writer.addField(FieldSpec.builder(ArrayTypeName.of(STRING), "NAMES"
+                    , Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .addJavadoc("the names of the properties (in the order of the accessors): including the quotes "
+                            + "and the colon\n")
+                    .initializer("new String[$L]", accessors.size())
+                    .build());
+            writer.addField(FieldSpec.builder(ArrayTypeName.of(BYTE_ARRAY), "NAME_BYTES"
+                    , Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("new byte[NAMES.length][]")
+                    .build());
+            // not an array initializer: the static initializer is split for wide DTOs
+            MethodSplitter names = MethodSplitter.statements("initNames");
+            for (int i = 0; i < accessors.size(); i++) {
+                names.addStatement("NAMES[$L] = $S", i, "\"" + accessors.get(i).name + "\":");
+            }
+            writer.addStaticBlock(CodeBlock.builder()
+                    .add(names.getCode())
+                    .beginControlFlow("for (int i = 0; i < NAMES.length; i++)")
+                    .addStatement("NAME_BYTES[i] = NAMES[i].getBytes($T.UTF_8)", StandardCharsets.class)
+                    .endControlFlow()
+                    .build());
+            writer.addMethods(names.getHelperMethods(Modifier.PRIVATE, Modifier.STATIC));
+        }
+        writer.addField(byteConstant("NULL_BYTES", "null"));
+        if (uses(ValueKind.BOOLEAN)) {
+            writer.addField(byteConstant("TRUE_BYTES", "true"));
+            writer.addField(byteConstant("FALSE_BYTES", "false"));
+        }
+        if (usesStrings()) {
+            writer.addField(FieldSpec.builder(STRING, "HEX_DIGITS", Modifier.PRIVATE, Modifier.STATIC
+                    , Modifier.FINAL)
+                    .initializer("$S", "0123456789abcdef")
+                    .build());
+        }
+    }
+
+    private static FieldSpec byteConstant(String name, String ascii) {
+        return FieldSpec.builder(BYTE_ARRAY, name, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$S.getBytes($T.US_ASCII)", ascii, StandardCharsets.class)
+                .build();
+    }
+
+    private static CodeBlock getFieldsCode(MethodSplitter fields) {
+        if (fields.getCode().isEmpty()) {
+            return fields.getCode();
+        }
+        return CodeBlock.builder()
+                .addStatement("boolean comma = false")
+                .add(fields.getCode())
+                .build();
+    }
+
+    /**
+     * @param writeValue writes the value of the local variable
+     * @param writeNull  writes null
+     * @return the code which writes the name and the value of the accessor: null values are only written when
+     * omitNulls is false
+     */
+    private CodeBlock getFieldCode(int index, CodeBlock writeValue, CodeBlock writeNull) {
+        MethodSpec accessor = accessors.get(index);
+        String value = "value" + index;
+        CodeBlock.Builder result = CodeBlock.builder()
+                .addStatement("$T $N = dto.$N()", accessor.returnType, value, accessor.name);
+        if (accessor.returnType.isPrimitive()) {
+            return result.addStatement("writeName($L, comma, out)", index)
+                    .addStatement("$L", writeValue)
+                    .addStatement("comma = true")
+                    .build();
+        }
+        return result.beginControlFlow("if ($N != null)", value)
+                .addStatement("writeName($L, comma, out)", index)
+                .addStatement("$L", writeValue)
+                .addStatement("comma = true")
+                .nextControlFlow("else if (!omitNulls)")
+                .addStatement("writeName($L, comma, out)", index)
+                .addStatement("$L", writeNull)
+                .addStatement("comma = true")
+                .endControlFlow()
+                .build();
+    }
+
+    private CodeBlock getAppendValue(ValueType valueType, String value) {
+        switch (valueType.kind) {
+            case BOOLEAN:
+                return CodeBlock.of("out.append($N ? $S : $S)", value, "true", "false");
+            case INTEGRAL:
+                return CodeBlock.of("out.append($T.toString($N))", Long.class, value);
+            case FLOAT:
+                return CodeBlock.of("out.append($T.isFinite($N) ? $T.toString($N) : $S)", Float.class, value
+                        , Float.class, value, "null");
+            case DOUBLE:
+                return CodeBlock.of("out.append($T.isFinite($N) ? $T.toString($N) : $S)", Double.class, value
+                        , Double.class, value, "null");
+            case ARRAY:
+            case ITERABLE:
+                return CodeBlock.of("$N($N, out)", arrayWriterNames.get(valueType.type), value);
+            default:
+                return CodeBlock.of("writeString($L, out)", getStringValue(valueType.kind, value));
+        }
+    }
+
+    private CodeBlock getPutValue(ValueType valueType, String value) {
+        switch (valueType.kind) {
+            case BOOLEAN:
+                return CodeBlock.of("out.put($N ? TRUE_BYTES : FALSE_BYTES)", value);
+            case INTEGRAL:
+                return CodeBlock.of("writeLong($N, out)", value);
+            case FLOAT:
+                return CodeBlock.of("writeAscii($T.isFinite($N) ? $T.toString($N) : $S, out)", Float.class, value
+                        , Float.class, value, "null");
+            case DOUBLE:
+                return CodeBlock.of("writeAscii($T.isFinite($N) ? $T.toString($N) : $S, out)", Double.class, value
+                        , Double.class, value, "null");
+            case ARRAY:
+            case ITERABLE:
+                return CodeBlock.of("$N($N, out)", arrayWriterNames.get(valueType.type), value);
+            default:
+                return CodeBlock.of("writeString($L, out)", getStringValue(valueType.kind, value));
+        }
+    }
+
+    private static CodeBlock getStringValue(ValueKind kind, String value) {
+        switch (kind) {
+            case CHAR:
+                return CodeBlock.of("$T.valueOf($N)", String.class, value);
+            case STRING:
+                return CodeBlock.of("$N", value);
+            case ENUM:
+                return CodeBlock.of("$N.name()", value);
+            default:
+                return CodeBlock.of("$N.toString()", value);
+        }
+    }
+
+    /**
+     * adds the methods which write the array (or iterable) to an {@link Appendable} and to a {@link ByteBuffer}:
+     * null elements are written as null
+     */
+    private void addArrayWriters(TypeSpec.Builder writer, ValueType arrayType) {
+        String name = arrayWriterNames.get(arrayType.type);
+        writer.addMethod(MethodSpec.methodBuilder(name)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(arrayType.type, "value")
+                .addParameter(APPENDABLE, "out")
+                .addException(IOException.class)
+                .addStatement("out.append('[')")
+                .addCode(getElementsCode(arrayType, "out.append(',')"
+                        , getAppendValue(arrayType.elementType, "element"), CodeBlock.of("out.append($S)", "null")))
+                .addStatement("out.append(']')")
+                .build());
+        writer.addMethod(MethodSpec.methodBuilder(name)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(arrayType.type, "value")
+                .addParameter(BYTE_BUFFER, "out")
+                .addStatement("out.put((byte) '[')")
+                .addCode(getElementsCode(arrayType, "out.put((byte) ',')"
+                        , getPutValue(arrayType.elementType, "element"), CodeBlock.of("out.put(NULL_BYTES)")))
+                .addStatement("out.put((byte) ']')")
+                .build());
+    }
+
+    private static CodeBlock getElementsCode(ValueType arrayType, String writeComma, CodeBlock writeElement
+            , CodeBlock writeNull) {
+        CodeBlock.Builder result = CodeBlock.builder()
+                .addStatement("boolean comma = false")
+                .beginControlFlow("for ($T element : value)", arrayType.elementType.type)
+                .beginControlFlow("if (comma)")
+                .addStatement(writeComma)
+                .endControlFlow()
+                .addStatement("comma = true");
+        if (arrayType.elementType.type.isPrimitive()) {
+            result.addStatement("$L", writeElement);
+        } else {
+            result.beginControlFlow("if (element != null)")
+                    .addStatement("$L", writeElement)
+                    .nextControlFlow("else")
+                    .addStatement("$L", writeNull)
+                    .endControlFlow();
+        }
+        return result.endControlFlow().build();
+    }
+
+    private void addHelperMethods(TypeSpec.Builder writer) {
+        if (!accessors.isEmpty()) {
+            writer.addMethod(MethodSpec.methodBuilder("writeName")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .addParameter(TypeName.INT, "index")
+                    .addParameter(TypeName.BOOLEAN, "comma")
+                    .addParameter(APPENDABLE, "out")
+                    .addException(IOException.class)
+                    .beginControlFlow("if (comma)")
+                    .addStatement("out.append(',')")
+                    .endControlFlow()
+                    .addStatement("out.append(NAMES[index])")
+                    .build());
+            writer.addMethod(MethodSpec.methodBuilder("writeName")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .addParameter(TypeName.INT, "index")
+                    .addParameter(TypeName.BOOLEAN, "comma")
+                    .addParameter(BYTE_BUFFER, "out")
+                    .beginControlFlow("if (comma)")
+                    .addStatement("out.put((byte) ',')")
+                    .endControlFlow()
+                    .addStatement("out.put(NAME_BYTES[index])")
+                    .build());
+        }
+        if (usesStrings()) {
+            writer.addMethod(MethodSpec.methodBuilder("writeString")
+                    .addJavadoc("writes the quoted value: the unescaped parts are appended as ranges\n")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .addParameter(CHAR_SEQUENCE, "value")
+                    .addParameter(APPENDABLE, "out")
+                    .addException(IOException.class)
+                    .addStatement("out.append('\"')")
+                    .addStatement("int start = 0")
+                    .addStatement("int length = value.length()")
+                    .beginControlFlow("for (int i = 0; i < length; i++)")
+                    .addStatement("char c = value.charAt(i)")
+                    .beginControlFlow("if (c < 0x20 || c == '\"' || c == '\\\\')")
+                    .addStatement("out.append(value, start, i)")
+                    .beginControlFlow("if (c < 0x20)")
+                    .addStatement("out.append($S).append(HEX_DIGITS.charAt(c >> 4)).append(HEX_DIGITS.charAt(c & 0xF))"
+                            , "\\u00")
+                    .nextControlFlow("else")
+                    .addStatement("out.append('\\\\').append(c)")
+                    .endControlFlow()
+                    .addStatement("start = i + 1")
+                    .endControlFlow()
+                    .endControlFlow()
+                    .addStatement("out.append(value, start, length)")
+                    .addStatement("out.append('\"')")
+                    .build());
+            writer.addMethod(MethodSpec.methodBuilder("writeString")
+                    .addJavadoc("writes the quoted value as UTF-8: unpaired surrogates are written as '?'\n")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .addParameter(CHAR_SEQUENCE, "value")
+                    .addParameter(BYTE_BUFFER, "out")
+                    .addStatement("out.put((byte) '\"')")
+                    .addStatement("int length = value.length()")
+                    .beginControlFlow("for (int i = 0; i < length; i++)")
+                    .addStatement("char c = value.charAt(i)")
+                    .beginControlFlow("if (c < 0x20)")
+                    .addStatement("out.put((byte) '\\\\').put((byte) 'u').put((byte) '0').put((byte) '0')")
+                    .addStatement("out.put((byte) HEX_DIGITS.charAt(c >> 4)).put((byte) HEX_DIGITS.charAt(c & 0xF))")
+                    .nextControlFlow("else if (c == '\"' || c == '\\\\')")
+                    .addStatement("out.put((byte) '\\\\').put((byte) c)")
+                    .nextControlFlow("else if (c < 0x80)")
+                    .addStatement("out.put((byte) c)")
+                    .nextControlFlow("else if (c < 0x800)")
+                    .addStatement("out.put((byte) (0xC0 | (c >> 6))).put((byte) (0x80 | (c & 0x3F)))")
+                    .nextControlFlow("else if (!$T.isSurrogate(c))", Character.class)
+                    .addStatement("out.put((byte) (0xE0 | (c >> 12))).put((byte) (0x80 | ((c >> 6) & 0x3F)))"
+                            + ".put((byte) (0x80 | (c & 0x3F)))")
+                    .nextControlFlow("else if ($T.isHighSurrogate(c) && i + 1 < length "
+                            + "&& $T.isLowSurrogate(value.charAt(i + 1)))", Character.class, Character.class)
+                    .addStatement("int codePoint = $T.toCodePoint(c, value.charAt(++i))", Character.class)
+                    .addStatement("out.put((byte) (0xF0 | (codePoint >> 18))).put((byte) (0x80 | ((codePoint >> 12) "
+                            + "& 0x3F)))")
+                    .addStatement("out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F))).put((byte) (0x80 | (codePoint "
+                            + "& 0x3F)))")
+                    .nextControlFlow("else")
+                    .addStatement("out.put((byte) '?')")
+                    .endControlFlow()
+                    .endControlFlow()
+                    .addStatement("out.put((byte) '\"')")
+                    .build());
+        }
+        if (uses(ValueKind.INTEGRAL)) {
+            writer.addMethod(MethodSpec.methodBuilder("writeLong")
+                    .addJavadoc("writes the digits directly to the buffer: no string is allocated\n")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .addParameter(TypeName.LONG, "value")
+                    .addParameter(BYTE_BUFFER, "out")
+                    .beginControlFlow("if (value == $T.MIN_VALUE)", Long.class)
+                    .addStatement("out.put($T.toString(value).getBytes($T.US_ASCII))", Long.class
+                            , StandardCharsets.class)
+                    .addStatement("return")
+                    .endControlFlow()
+                    .beginControlFlow("if (value < 0)")
+                    .addStatement("out.put((byte) '-')")
+                    .addStatement("value = -value")
+                    .endControlFlow()
+                    .addStatement("int digits = 1")
+                    .beginControlFlow("for (long rest = value / 10; rest != 0; rest /= 10)")
+                    .addStatement("digits++")
+                    .endControlFlow()
+                    .addStatement("int end = out.position() + digits")
+                    .beginControlFlow("if (end > out.limit())")
+                    .addStatement("throw new $T()", BufferOverflowException.class)
+                    .endControlFlow()
+                    .beginControlFlow("for (int i = end - 1; i >= out.position(); i--)")
+                    .addStatement("out.put(i, (byte) ('0' + value % 10))")
+                    .addStatement("value /= 10")
+                    .endControlFlow()
+                    .addStatement("out.position(end)")
+                    .build());
+        }
+        if (uses(ValueKind.FLOAT, ValueKind.DOUBLE)) {
+            writer.addMethod(MethodSpec.methodBuilder("writeAscii")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .addParameter(STRING, "value")
+                    .addParameter(BYTE_BUFFER, "out")
+                    .beginControlFlow("for (int i = 0; i < value.length(); i++)")
+                    .addStatement("out.put((byte) value.charAt(i))")
+                    .endControlFlow()
+                    .build());
+        }
+    }
+}
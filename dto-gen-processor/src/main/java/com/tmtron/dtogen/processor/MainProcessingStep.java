@@ -20,11 +20,20 @@ import com.google.auto.common.MoreTypes;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.SetMultimap;
 
+import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeMirror;
@@ -36,9 +45,51 @@ import javax.tools.Diagnostic;
 public class MainProcessingStep implements BasicAnnotationProcessor.ProcessingStep {
 
     private final ProcessingEnvironment processingEnv;
+    private final ProcessorOptions options;
+    /**
+     * the cache for the generated source code or null, see {@link ProcessorOptions#CACHE_DIR}
+     */
+    private final GeneratedSourceCache cache;
+    /**
+     * the stats of all rounds or null, see {@link ProcessorOptions#STATS}
+     */
+    private final ProcessingStats processingStats;
+    /**
+     * null, or the listener which is notified about every generated DTO
+     */
+    private final GenerationListener generationListener;
+    /**
+     * the index of all generated DTOs or null, see {@link ProcessorOptions#REGISTRY}
+     */
+    private final DtoIndex dtoIndex;
+    private boolean dtosGeneratedInThisRound;
 
     public MainProcessingStep(ProcessingEnvironment processingEnv) {
+        this(processingEnv, null);
+    }
+
+    MainProcessingStep(ProcessingEnvironment processingEnv, GenerationListener generationListener) {
         this.processingEnv = processingEnv;
+        this.generationListener = generationListener;
+        this.options = getOptions(processingEnv);
+        Path cacheDirectory = options.getCacheDirectoryOrNull();
+        this.cache = cacheDirectory == null ? null : new GeneratedSourceCache(cacheDirectory);
+        Path statsReportFile = options.getStatsReportFileOrNull();
+        this.processingStats = statsReportFile == null ? null : new ProcessingStats(statsReportFile);
+        String registryClassName = options.getRegistryClassNameOrNull();
+        this.dtoIndex = registryClassName == null ? null : new DtoIndex(registryClassName, options.isReproducible());
+    }
+
+    /**
+     * @return the processor options, or the default options when an option is invalid (which is reported as error)
+     */
+    private static ProcessorOptions getOptions(ProcessingEnvironment processingEnv) {
+        try {
+            return new ProcessorOptions(processingEnv.getOptions());
+        } catch (IllegalArgumentException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage());
+            return new ProcessorOptions(Collections.<String, String>emptyMap());
+        }
     }
 
     @Override
@@ -48,33 +99,154 @@ public class MainProcessingStep implements BasicAnnotationProcessor.ProcessingSt
 
     @Override
     public Set<Element> process(SetMultimap<Class<? extends Annotation>, Element> elementsByAnnotation) {
-        try {
-            if (elementsByAnnotation.size() != 1) {
-                throw new Exception("Exactly one " + DtoConfig.class.getName() + " annotation is required!");
-            }
-
-            Set<Element> elementsAnnotatedWithDtoConfig = elementsByAnnotation.get(DtoConfig.class);
-            processDtoConfig(elementsAnnotatedWithDtoConfig);
-        } catch (Exception e) {
-            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
-                    "Annotation processing error: " + e.getClass().getSimpleName() + "-" + e.getMessage());
-        }
+        Set<Element> elementsAnnotatedWithDtoConfig = elementsByAnnotation.get(DtoConfig.class);
+        processDtoConfig(elementsAnnotatedWithDtoConfig);
 
         return Collections.emptySet();
     }
 
+    /**
+     * Processes all templates of the current round.
+     * <p>
+     * Each template is processed on its own: when one template fails, the error is reported on that template and
+     * the remaining templates are still processed.
+     * </p>
+     * <p>
+     * The templates are processed in 3 steps:
+     * <ol>
+     * <li>collect the information from the templates (javac thread)</li>
+     * <li>render the source files (in parallel, see {@link ProcessorOptions#PARALLEL})</li>
+     * <li>write the source files (javac thread)</li>
+     * </ol>
+     * </p>
+     */
     private void processDtoConfig(Set<Element> elementsAnnotatedWithDtoConfig) {
+        RoundContext roundContext = new RoundContext(processingEnv);
+        List<DtoSourceFile> sourceFiles = new ArrayList<>();
         for (Element element : elementsAnnotatedWithDtoConfig) {
             try {
                 TypeMirror classTypeMirror = element.asType();
                 TypeElement classTypeElement = MoreTypes.asTypeElement(classTypeMirror);
                 // e.g. classTypeElement.getQualifiedName() = com.tmtron.dtogen.processor.test.User.class
-                new DtoConfigElementProcessor(processingEnv, classTypeElement).work();
+                DtoConfigElementProcessor elementProcessor = new DtoConfigElementProcessor(processingEnv, options
+                        , roundContext, cache, classTypeElement);
+                if (dtoIndex != null && !elementProcessor.hasSourceCode()) {
+                    // Gradle passes the unchanged templates of an aggregating processor as class files: their DTOs
+                    // have been generated by a previous compilation
+                    elementProcessor.addToIndex(dtoIndex);
+                    continue;
+                }
+                sourceFiles.addAll(elementProcessor.work());
             } catch (Exception e) {
-                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR
-                        , "Annotation processing error: " + e.getClass().getSimpleName() + "-" + e.getMessage()
-                        , element);
+                printError(e, element);
             }
         }
+
+        dtosGeneratedInThisRound |= !sourceFiles.isEmpty();
+        final Map<DtoSourceFile, Exception> renderErrors = renderAll(sourceFiles);
+        // the source files of the projections of a template share the stats of the template
+        final Set<TemplateStats> reportedStats = new HashSet<>();
+
+        for (DtoSourceFile sourceFile : sourceFiles) {
+            try {
+                Exception renderError = renderErrors.get(sourceFile);
+                if (renderError != null) {
+                    throw renderError;
+                }
+                long start = System.nanoTime();
+                sourceFile.writeTo(processingEnv.getFiler());
+                sourceFile.getStats().addFilerWriteNanos(System.nanoTime() - start);
+            } catch (Exception e) {
+                printError(e, sourceFile.getTemplate());
+                continue;
+            }
+            updateCache(sourceFile);
+            if (dtoIndex != null) {
+                try {
+                    dtoIndex.add(sourceFile);
+                } catch (Exception e) {
+                    printError(e, sourceFile.getTemplate());
+                }
+            }
+            if (generationListener != null) {
+                generationListener.dtoGenerated(sourceFile.getTemplate(), sourceFile.getSourceTypes());
+            }
+            if (processingStats != null && reportedStats.add(sourceFile.getStats())) {
+                processingStats.add(sourceFile.getStats());
+            }
+        }
+
+        reportStats();
+    }
+
+    /**
+     * Is called after each round: the DTO index is written in the first round which does not generate new DTOs.
+     * <p>
+     * The generated DTOs start a new round, so the index is not written in the last round and the generated registry
+     * class is also compiled.
+     * </p>
+     */
+    void postRound(RoundEnvironment roundEnv) {
+        if (dtoIndex == null || !dtoIndex.hasPendingEntries() || dtosGeneratedInThisRound) {
+            dtosGeneratedInThisRound = false;
+            return;
+        }
+        try {
+            dtoIndex.writeTo(processingEnv.getFiler());
+        } catch (Exception e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR
+                    , "Cannot write the DTO index: " + e.getClass().getSimpleName() + "-" + e.getMessage());
+        }
+    }
+
+    private void reportStats() {
+        if (processingStats == null) {
+            return;
+        }
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, processingStats.getSummary());
+        try {
+            processingStats.writeReport();
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING
+                    , "Cannot write the dto-gen stats report: " + e.getMessage());
+        }
+    }
+
+    private void updateCache(DtoSourceFile sourceFile) {
+        if (cache == null || sourceFile.isFromCache() || sourceFile.getFingerprint() == null) {
+            return;
+        }
+        try {
+            cache.put(sourceFile.getFileName(), sourceFile.getFingerprint(), sourceFile.getContent());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING
+                    , "Cannot update the generated source cache: " + e.getMessage(), sourceFile.getTemplate());
+        }
+    }
+
+    /**
+     * @return key: the source files that could not be rendered, value: the exception
+     */
+    private Map<DtoSourceFile, Exception> renderAll(List<DtoSourceFile> sourceFiles) {
+        final Map<DtoSourceFile, Exception> result = new ConcurrentHashMap<>();
+        Stream<DtoSourceFile> sourceFileStream = sourceFiles.stream();
+        if (options.isParallel() && sourceFiles.size() > 1) {
+            sourceFileStream = sourceFileStream.parallel();
+        }
+        sourceFileStream.forEach(sourceFile -> {
+            try {
+                sourceFile.render();
+            } catch (Exception e) {
+                // the messager must only be used from the javac thread
+                result.put(sourceFile, e);
+            }
+        });
+        return result;
+    }
+
+    private void printError(Exception e, Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR
+                , "Annotation processing error: " + e.getClass().getSimpleName() + "-" + e.getMessage()
+                , element);
     }
 }
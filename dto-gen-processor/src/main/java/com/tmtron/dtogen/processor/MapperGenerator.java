@@ -0,0 +1,436 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * Generates the mapper of a DTO, see {@link ProcessorOptions#MAPPERS}: e.g. {@code UserDtoMapper.from(user)} calls
+ * each accessor of the source directly (no reflection) and creates the DTO.
+ * <p>
+ * How the DTO is created depends on its {@link DtoKind}. The statements of the mapping method are split by the
+ * {@link MethodSplitter}, so that the mappers of very wide DTOs can still be JIT-compiled.
+ * </p>
+ * <p>
+ * The bulk methods (see {@link ProcessorOptions#BULK_MAPPERS}) map lists, collections and arrays into pre-sized
+ * lists and arrays: random access lists are mapped without an iterator and large lists can be mapped in parallel
+ * with a fork-join task.
+ * </p>
+ */
+class MapperGenerator {
+
+    static final String MAPPER_SUFFIX = "Mapper";
+    static final String IMPLEMENTATION_NAME = "Impl";
+
+    /**
+     * how the mapper creates the DTO
+     */
+    enum DtoKind {
+        /**
+         * the mapper contains a nested implementation of the abstract DTO class
+         */
+        CLASS,
+        /**
+         * the mapper contains a nested implementation of the DTO interface
+         */
+        INTERFACE,
+        /**
+         * the mapper calls the canonical constructor of the record
+         */
+        RECORD,
+        /**
+         * the mapper calls the constructor of the final immutable class, see {@link ImmutableLayout}
+         */
+        IMMUTABLE_CLASS,
+        /**
+         * the mapper creates the mutable DTO and calls its copyFrom method, see {@link MutableLayout}
+         */
+        MUTABLE_CLASS,
+        /**
+         * the template has the annotation {@code org.immutables.value.Value.Immutable}: the mapper uses the builder of
+         * the immutable implementation that is generated by Immutables (with the default style)
+         */
+        IMMUTABLES
+    }
+
+    private final ClassName dtoClassName;
+    private final DtoKind dtoKind;
+    private final Set<Modifier> dtoModifiers;
+    /**
+     * the parameter type of the mapper: the source type or a type variable with the source types as bounds
+     */
+    private final TypeName sourceType;
+    private final TypeVariableName sourceTypeVariable;
+    /**
+     * the abstract accessors of the DTO
+     */
+    private final List<MethodSpec> accessors = new ArrayList<>();
+    /**
+     * the names of the accessors of the source (in the same order as the accessors)
+     */
+    private final List<String> sourceAccessorNames = new ArrayList<>();
+    /**
+     * 0 or the default threshold for the parallel bulk mapping: when the value is 0, no bulk methods are generated
+     */
+    private int parallelThreshold;
+
+    /**
+     * @param sourceTypes the source types of the template: the superclass (if any) must be the first type
+     */
+    MapperGenerator(ClassName dtoClassName, DtoKind dtoKind, Set<Modifier> dtoModifiers, List<TypeName> sourceTypes) {
+        this.dtoClassName = dtoClassName;
+        this.dtoKind = dtoKind;
+        this.dtoModifiers = dtoModifiers;
+        this.sourceTypeVariable = getSourceTypeVariableOrNull(sourceTypes);
+        this.sourceType = sourceTypeVariable == null ? sourceTypes.get(0) : sourceTypeVariable;
+    }
+
+    /**
+     * @param sourceTypes the source types of the template (at least one)
+     * @return null when there is only one source type, otherwise a type variable with all source types as bounds: the
+     * source must implement all source types
+     */
+    static TypeVariableName getSourceTypeVariableOrNull(List<TypeName> sourceTypes) {
+        if (sourceTypes.size() == 1) {
+            return null;
+        }
+        return TypeVariableName.get("S", sourceTypes.toArray(new TypeName[0]));
+    }
+
+    /**
+     * @param accessor           the abstract accessor of the DTO
+     * @param sourceAccessorName the name of the corresponding accessor of the source
+     */
+    void addAccessor(MethodSpec accessor, String sourceAccessorName) {
+        accessors.add(accessor);
+        sourceAccessorNames.add(sourceAccessorName);
+    }
+
+    /**
+     * also generates the bulk methods
+     *
+     * @param parallelThreshold lists with more elements are mapped in parallel (see
+     *                          {@link ProcessorOptions#PARALLEL_MAPPER_THRESHOLD})
+     */
+    MapperGenerator withBulkMethods(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+        return this;
+    }
+
+    ClassName getMapperClassName() {
+        return dtoClassName.peerClass(dtoClassName.simpleName() + MAPPER_SUFFIX);
+    }
+
+    TypeSpec.Builder build() {
+        TypeSpec.Builder result = TypeSpec.classBuilder(getMapperClassName())
+                .addModifiers(Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .build());
+        if (dtoModifiers.contains(Modifier.PUBLIC)) {
+            result.addModifiers(Modifier.PUBLIC);
+        }
+
+        MethodSpec.Builder fromMethod = MethodSpec.methodBuilder("from")
+                .addJavadoc("@return a new DTO with the values of the source or null when the source is null\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(dtoClassName)
+                .addParameter(sourceType, "source");
+        if (sourceTypeVariable != null) {
+            fromMethod.addTypeVariable(sourceTypeVariable);
+        }
+        fromMethod.beginControlFlow("if (source == null)")
+                .addStatement("return null")
+                .endControlFlow();
+
+        List<MethodSpec> helperMethods = new ArrayList<>();
+        TypeSpec implementation = null;
+        switch (dtoKind) {
+            case RECORD:
+            case IMMUTABLE_CLASS:
+                // the parameters of the constructor are in the order of the accessors
+                fromMethod.addStatement("return new $T($L)", dtoClassName, getSourceAccessorCalls());
+                break;
+            case MUTABLE_CLASS:
+                fromMethod.addStatement("return new $T().copyFrom(source)", dtoClassName);
+                break;
+            case IMMUTABLES:
+                ClassName immutableClassName = dtoClassName.peerClass("Immutable" + dtoClassName.simpleName());
+                ClassName builderClassName = immutableClassName.nestedClass("Builder");
+                MethodSplitter builderCalls = createMethodSplitter(builderClassName, "builder");
+                for (int i = 0; i < accessors.size(); i++) {
+                    builderCalls.addStatement("builder.$N(source.$N())", accessors.get(i).name
+                            , sourceAccessorNames.get(i));
+                }
+                fromMethod.addStatement("$T builder = $T.builder()", builderClassName, immutableClassName)
+                        .addCode(builderCalls.getCode())
+                        .addStatement("return builder.build()");
+                helperMethods.addAll(builderCalls.getHelperMethods(Modifier.PRIVATE, Modifier.STATIC));
+                break;
+            default:
+                ClassName implementationClassName = getMapperClassName().nestedClass(IMPLEMENTATION_NAME);
+                MethodSplitter assignments = createMethodSplitter(implementationClassName, "result");
+                for (int i = 0; i < accessors.size(); i++) {
+                    assignments.addStatement("result.$N = source.$N()", accessors.get(i).name
+                            , sourceAccessorNames.get(i));
+                }
+                fromMethod.addStatement("$T result = new $T()", implementationClassName, implementationClassName)
+                        .addCode(assignments.getCode())
+                        .addStatement("return result");
+                helperMethods.addAll(assignments.getHelperMethods(Modifier.PRIVATE, Modifier.STATIC));
+                implementation = buildImplementation(implementationClassName);
+        }
+        result.addMethod(fromMethod.build());
+        result.addMethods(helperMethods);
+        if (parallelThreshold > 0) {
+            addBulkMethods(result);
+        }
+        if (implementation != null) {
+            result.addType(implementation);
+        }
+        return result;
+    }
+
+    private void addBulkMethods(TypeSpec.Builder mapper) {
+        TypeName sources = ParameterizedTypeName.get(ClassName.get(List.class), WildcardTypeName.subtypeOf(sourceType));
+        TypeName dtoList = ParameterizedTypeName.get(ClassName.get(List.class), dtoClassName);
+        ClassName mapTaskClassName = getMapperClassName().nestedClass("MapTask");
+        TypeName mapTask = sourceTypeVariable == null
+                ? mapTaskClassName : ParameterizedTypeName.get(mapTaskClassName, sourceTypeVariable);
+
+        mapper.addField(FieldSpec.builder(TypeName.INT, "PARALLEL_THRESHOLD", Modifier.STATIC, Modifier.FINAL)
+                .initializer("$L", parallelThreshold)
+                .build());
+
+        mapper.addMethod(bulkMethodBuilder("fromList")
+                .addJavadoc("@return the DTOs of the sources (in the same order) or null when the sources are null\n")
+                .returns(dtoList)
+                .addParameter(sources, "sources")
+                .beginControlFlow("if (sources == null)")
+                .addStatement("return null")
+                .endControlFlow()
+                .addStatement("int size = sources.size()")
+                .addStatement("$T result = new $T<>(size)", dtoList, ArrayList.class)
+                .beginControlFlow("if (sources instanceof $T)", RandomAccess.class)
+                .beginControlFlow("for (int i = 0; i < size; i++)")
+                .addStatement("result.add(from(sources.get(i)))")
+                .endControlFlow()
+                .nextControlFlow("else")
+                .beginControlFlow("for ($T source : sources)", sourceType)
+                .addStatement("result.add(from(source))")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return result")
+                .build());
+
+        TypeName sourceCollection = ParameterizedTypeName.get(ClassName.get(Collection.class)
+                , WildcardTypeName.subtypeOf(sourceType));
+        mapper.addMethod(bulkMethodBuilder("fromCollection")
+                .addJavadoc("@return the DTOs of the sources (in the iteration order) or null when the sources are "
+                        + "null\n")
+                .returns(dtoList)
+                .addParameter(sourceCollection, "sources")
+                .beginControlFlow("if (sources instanceof $T)", List.class)
+                .addStatement("return fromList(($T) sources)", sources)
+                .endControlFlow()
+                .beginControlFlow("if (sources == null)")
+                .addStatement("return null")
+                .endControlFlow()
+                .addStatement("$T result = new $T<>(sources.size())", dtoList, ArrayList.class)
+                .beginControlFlow("for ($T source : sources)", sourceType)
+                .addStatement("result.add(from(source))")
+                .endControlFlow()
+                .addStatement("return result")
+                .build());
+
+        mapper.addMethod(bulkMethodBuilder("fromArray")
+                .addJavadoc("@return the DTOs of the sources (in the same order) or null when the sources are null\n")
+                .returns(ArrayTypeName.of(dtoClassName))
+                .addParameter(ArrayTypeName.of(sourceType), "sources")
+                .beginControlFlow("if (sources == null)")
+                .addStatement("return null")
+                .endControlFlow()
+                .addStatement("$T[] result = new $T[sources.length]", dtoClassName, dtoClassName)
+                .beginControlFlow("for (int i = 0; i < sources.length; i++)")
+                .addStatement("result[i] = from(sources[i])")
+                .endControlFlow()
+                .addStatement("return result")
+                .build());
+
+        mapper.addMethod(bulkMethodBuilder("fromListParallel")
+                .addJavadoc("@see #fromListParallel(List, int)\n")
+                .returns(dtoList)
+                .addParameter(sources, "sources")
+                .addStatement("return fromListParallel(sources, PARALLEL_THRESHOLD)")
+                .build());
+
+        mapper.addMethod(bulkMethodBuilder("fromListParallel")
+                .addJavadoc("Maps the sources in the common fork-join pool: each task maps at most threshold "
+                        + "sources.\n\n"
+                        + "@return the DTOs of the sources (in the same order) or null when the sources are null: the "
+                        + "list has a fixed size when the sources are mapped in parallel\n")
+                .returns(dtoList)
+                .addParameter(sources, "sources")
+                .addParameter(TypeName.INT, "threshold")
+                .beginControlFlow("if (sources == null || sources.size() <= threshold)")
+                .addStatement("return fromList(sources)")
+                .endControlFlow()
+                .addStatement("$T randomAccessSources", sources)
+                .beginControlFlow("if (sources instanceof $T)", RandomAccess.class)
+                .addStatement("randomAccessSources = sources")
+                .nextControlFlow("else")
+                .addStatement("randomAccessSources = new $T<>(sources)", ArrayList.class)
+                .endControlFlow()
+                .addStatement("$T[] result = new $T[randomAccessSources.size()]", dtoClassName, dtoClassName)
+                .addStatement("$T.commonPool().invoke(new $T$L(randomAccessSources, result, 0, result.length, "
+                                + "$T.max(1, threshold)))", ForkJoinPool.class, mapTaskClassName
+                        , sourceTypeVariable == null ? "" : "<>", Math.class)
+                .addStatement("return $T.asList(result)", Arrays.class)
+                .build());
+
+        mapper.addType(buildMapTask(mapTaskClassName, mapTask, sources));
+    }
+
+    private MethodSpec.Builder bulkMethodBuilder(String name) {
+        MethodSpec.Builder result = MethodSpec.methodBuilder(name)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC);
+        if (sourceTypeVariable != null) {
+            result.addTypeVariable(sourceTypeVariable);
+        }
+        return result;
+    }
+
+    /**
+     * @return the fork-join task which maps a range of the sources
+     */
+    private TypeSpec buildMapTask(ClassName mapTaskClassName, TypeName mapTask, TypeName sources) {
+        TypeName dtoArray = ArrayTypeName.of(dtoClassName);
+        TypeSpec.Builder result = TypeSpec.classBuilder(mapTaskClassName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .superclass(RecursiveAction.class)
+                .addField(FieldSpec.builder(TypeName.LONG, "serialVersionUID", Modifier.PRIVATE, Modifier.STATIC
+                        , Modifier.FINAL)
+                        .initializer("1L")
+                        .build())
+                .addField(sources, "sources", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(dtoArray, "result", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(TypeName.INT, "start", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(TypeName.INT, "end", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(TypeName.INT, "threshold", Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addParameter(sources, "sources")
+                        .addParameter(dtoArray, "result")
+                        .addParameter(TypeName.INT, "start")
+                        .addParameter(TypeName.INT, "end")
+                        .addParameter(TypeName.INT, "threshold")
+                        .addStatement("this.sources = sources")
+                        .addStatement("this.result = result")
+                        .addStatement("this.start = start")
+                        .addStatement("this.end = end")
+                        .addStatement("this.threshold = threshold")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("compute")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PROTECTED)
+                        .beginControlFlow("if (end - start <= threshold)")
+                        .beginControlFlow("for (int i = start; i < end; i++)")
+                        .addStatement("result[i] = from(sources.get(i))")
+                        .endControlFlow()
+                        .addStatement("return")
+                        .endControlFlow()
+                        .addStatement("int middle = (start + end) >>> 1")
+                        .addStatement("invokeAll(new $T(sources, result, start, middle, threshold), "
+                                + "new $T(sources, result, middle, end, threshold))", mapTask, mapTask)
+                        .build());
+        if (sourceTypeVariable != null) {
+            result.addTypeVariable(sourceTypeVariable);
+        }
+        return result.build();
+    }
+
+    private MethodSplitter createMethodSplitter(TypeName targetType, String targetName) {
+        MethodSplitter result = MethodSplitter.statements("from")
+                .addParameter(sourceType, "source")
+                .addParameter(targetType, targetName);
+        if (sourceTypeVariable != null) {
+            result.addTypeVariable(sourceTypeVariable);
+        }
+        return result;
+    }
+
+    private CodeBlock getSourceAccessorCalls() {
+        CodeBlock.Builder result = CodeBlock.builder();
+        for (int i = 0; i < sourceAccessorNames.size(); i++) {
+            if (i > 0) {
+                result.add(", ");
+            }
+            result.add("source.$N()", sourceAccessorNames.get(i));
+        }
+        return result.build();
+    }
+
+    /**
+     * @return the implementation of the DTO: the fields are set by the mapper
+     */
+    private TypeSpec buildImplementation(ClassName implementationClassName) {
+        TypeSpec.Builder result = TypeSpec.classBuilder(implementationClassName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL);
+        if (dtoKind == DtoKind.INTERFACE) {
+            result.addSuperinterface(dtoClassName);
+        } else {
+            result.superclass(dtoClassName);
+        }
+        for (MethodSpec accessor : accessors) {
+            result.addField(FieldSpec.builder(accessor.returnType, accessor.name, Modifier.PRIVATE).build());
+        }
+        for (MethodSpec accessor : accessors) {
+            MethodSpec.Builder implementation = MethodSpec.methodBuilder(accessor.name)
+                    .addAnnotation(Override.class)
+                    .returns(accessor.returnType)
+                    .addStatement("return $N", accessor.name);
+            for (Modifier modifier : accessor.modifiers) {
+                if (modifier != Modifier.ABSTRACT) {
+                    implementation.addModifiers(modifier);
+                }
+            }
+            if (dtoKind == DtoKind.INTERFACE && !accessor.modifiers.contains(Modifier.PUBLIC)) {
+                implementation.addModifiers(Modifier.PUBLIC);
+            }
+            result.addMethod(implementation.build());
+        }
+        return result.build();
+    }
+}
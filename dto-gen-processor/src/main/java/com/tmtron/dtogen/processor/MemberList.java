@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the members of a DTO, so that they can be passed to several sinks, see {@link Projection}
+ */
+class MemberList implements MemberSink {
+
+    /**
+     * the {@link FieldSpec}s and {@link MethodSpec}s in the order in which they have been added
+     */
+    private final List<Object> members = new ArrayList<>();
+
+    @Override
+    public void addField(FieldSpec fieldSpec) {
+        members.add(fieldSpec);
+    }
+
+    @Override
+    public void addMethod(MethodSpec methodSpec) {
+        members.add(methodSpec);
+    }
+
+    /**
+     * adds all members to the sink (in the order in which they have been added to this list)
+     */
+    void replayTo(MemberSink memberSink) {
+        for (Object member : members) {
+            if (member instanceof FieldSpec) {
+                memberSink.addField((FieldSpec) member);
+            } else {
+                memberSink.addMethod((MethodSpec) member);
+            }
+        }
+    }
+}
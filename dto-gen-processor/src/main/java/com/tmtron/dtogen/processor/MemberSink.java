@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+
+/**
+ * Receives the members of a generated DTO in the order in which they are emitted
+ */
+interface MemberSink {
+
+    void addField(FieldSpec fieldSpec);
+
+    void addMethod(MethodSpec methodSpec);
+
+    /**
+     * @return a sink which adds all members to the type spec builder
+     */
+    static MemberSink of(final TypeSpec.Builder typeSpecBuilder) {
+        return new MemberSink() {
+            @Override
+            public void addField(FieldSpec fieldSpec) {
+                typeSpecBuilder.addField(fieldSpec);
+            }
+
+            @Override
+            public void addMethod(MethodSpec methodSpec) {
+                typeSpecBuilder.addMethod(methodSpec);
+            }
+        };
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeVariableName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * Splits the statements of a generated method into helper methods, so that each method stays below the HotSpot
+ * limit for JIT compilation: methods with more than {@value #HUGE_METHOD_LIMIT} bytes of bytecode are always
+ * interpreted (see the JVM option {@code -XX:-DontCompileHugeMethods}).
+ * <p>
+ * The bytecode size of each statement is estimated (see {@link #estimateBytecodeSize(CodeBlock)}) and the statements
+ * are collected in chunks up to the budget. When all statements fit into one chunk, they are used directly in the
+ * generated method. Otherwise each chunk becomes a helper method and the generated method calls the helpers.
+ * </p>
+ * <p>
+ * The statements can use the parameters of the helpers (see {@link #addParameter(TypeName, String)}) and there are
+ * 3 kinds of helper methods:
+ * <ul>
+ * <li>{@link #statements(String)}: void helpers, e.g. to copy the fields</li>
+ * <li>{@link #conjunction(String)}: the statements may {@code return false}, e.g. for equals</li>
+ * <li>{@link #accumulator(String, TypeName, String)}: the statements update a local variable which is passed through
+ * all helpers, e.g. for hashCode</li>
+ * </ul>
+ * </p>
+ */
+class MethodSplitter {
+
+    /**
+     * the maximum bytecode size of a method that HotSpot will JIT-compile
+     */
+    static final int HUGE_METHOD_LIMIT = 8000;
+
+    /**
+     * the estimate is rough: this budget leaves enough room
+     */
+    static final int DEFAULT_BUDGET = HUGE_METHOD_LIMIT / 2;
+
+    /**
+     * string and char literals, identifiers and number literals
+     */
+    private static final Pattern TOKEN_PATTERN = Pattern.compile(
+            "\"(?:\\\\.|[^\"\\\\])*\"|'(?:\\\\.|[^'\\\\])*'|[A-Za-z_$][\\w$]*|\\d[\\w.]*");
+
+    private enum Kind {STATEMENTS, CONJUNCTION, ACCUMULATOR}
+
+    private final Kind kind;
+    private final String helperMethodPrefix;
+    private final ParameterSpec accumulator;
+    private final List<TypeVariableName> typeVariables = new ArrayList<>();
+    private final List<ParameterSpec> parameters = new ArrayList<>();
+    private final List<TypeName> exceptions = new ArrayList<>();
+    private int budget = DEFAULT_BUDGET;
+
+    private final List<CodeBlock> chunks = new ArrayList<>();
+    private CodeBlock.Builder currentChunk;
+    private int currentChunkSize;
+
+    private MethodSplitter(Kind kind, String helperMethodPrefix, ParameterSpec accumulator) {
+        this.kind = kind;
+        this.helperMethodPrefix = helperMethodPrefix;
+        this.accumulator = accumulator;
+    }
+
+    /**
+     * @param helperMethodPrefix e.g. "copyFields": the helper methods are called "copyFields0", "copyFields1", ..
+     */
+    static MethodSplitter statements(String helperMethodPrefix) {
+        return new MethodSplitter(Kind.STATEMENTS, helperMethodPrefix, null);
+    }
+
+    /**
+     * The statements may {@code return false}: the generated method must {@code return true} after the code.
+     */
+    static MethodSplitter conjunction(String helperMethodPrefix) {
+        return new MethodSplitter(Kind.CONJUNCTION, helperMethodPrefix, null);
+    }
+
+    /**
+     * The statements update the accumulator: the generated method must declare it before the code.
+     *
+     * @param accumulatorName e.g. "result"
+     */
+    static MethodSplitter accumulator(String helperMethodPrefix, TypeName accumulatorType, String accumulatorName) {
+        return new MethodSplitter(Kind.ACCUMULATOR, helperMethodPrefix
+                , ParameterSpec.builder(accumulatorType, accumulatorName).build());
+    }
+
+    /**
+     * adds a parameter of the helper methods: the generated method must have a variable with the same name
+     */
+    MethodSplitter addParameter(TypeName type, String name) {
+        parameters.add(ParameterSpec.builder(type, name).build());
+        return this;
+    }
+
+    /**
+     * adds a type variable of the helper methods, e.g. when a parameter has a generic type
+     */
+    MethodSplitter addTypeVariable(TypeVariableName typeVariable) {
+        typeVariables.add(typeVariable);
+        return this;
+    }
+
+    /**
+     * adds an exception which is thrown by the statements
+     */
+    MethodSplitter addException(TypeName exception) {
+        exceptions.add(exception);
+        return this;
+    }
+
+    /**
+     * @param budget the maximum estimated bytecode size of a chunk
+     */
+    MethodSplitter budget(int budget) {
+        this.budget = budget;
+        return this;
+    }
+
+    /**
+     * @see CodeBlock.Builder#addStatement(String, Object...)
+     */
+    MethodSplitter addStatement(String format, Object... args) {
+        return addCode(CodeBlock.builder().addStatement(format, args).build());
+    }
+
+    /**
+     * adds code which must not be split, e.g. a complete control flow
+     */
+    MethodSplitter addCode(CodeBlock code) {
+        int size = estimateBytecodeSize(code);
+        if (currentChunk == null || currentChunkSize + size > budget) {
+            finishChunk();
+            currentChunk = CodeBlock.builder();
+            currentChunkSize = 0;
+        }
+        currentChunk.add(code);
+        currentChunkSize += size;
+        return this;
+    }
+
+    private void finishChunk() {
+        if (currentChunk != null) {
+            chunks.add(currentChunk.build());
+            currentChunk = null;
+        }
+    }
+
+    /**
+     * @return true when the statements are split into helper methods
+     */
+    boolean isSplit() {
+        finishChunk();
+        return chunks.size() > 1;
+    }
+
+    /**
+     * @return the code for the generated method: the statements or the calls of the helper methods
+     */
+    CodeBlock getCode() {
+        if (!isSplit()) {
+            return chunks.isEmpty() ? CodeBlock.builder().build() : chunks.get(0);
+        }
+        CodeBlock.Builder result = CodeBlock.builder();
+        for (int i = 0; i < chunks.size(); i++) {
+            String call = getHelperMethodName(i) + "(" + getArguments() + ")";
+            switch (kind) {
+                case CONJUNCTION:
+                    result.beginControlFlow("if (!$L)", call)
+                            .addStatement("return false")
+                            .endControlFlow();
+                    break;
+                case ACCUMULATOR:
+                    result.addStatement("$N = $L", accumulator, call);
+                    break;
+                default:
+                    result.addStatement("$L", call);
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * @param modifiers the modifiers of the helper methods, e.g. private
+     * @return the helper methods or an empty list when the statements are not split
+     */
+    List<MethodSpec> getHelperMethods(Modifier... modifiers) {
+        List<MethodSpec> result = new ArrayList<>();
+        if (!isSplit()) {
+            return result;
+        }
+        for (int i = 0; i < chunks.size(); i++) {
+            MethodSpec.Builder helperMethod = MethodSpec.methodBuilder(getHelperMethodName(i))
+                    .addModifiers(modifiers)
+                    .addTypeVariables(typeVariables)
+                    .addExceptions(exceptions);
+            if (accumulator != null) {
+                helperMethod.addParameter(accumulator);
+            }
+            helperMethod.addParameters(parameters);
+            helperMethod.addCode(chunks.get(i));
+            switch (kind) {
+                case CONJUNCTION:
+                    helperMethod.returns(TypeName.BOOLEAN).addStatement("return true");
+                    break;
+                case ACCUMULATOR:
+                    helperMethod.returns(accumulator.type).addStatement("return $N", accumulator);
+                    break;
+                default:
+                    break;
+            }
+            result.add(helperMethod.build());
+        }
+        return result;
+    }
+
+    private String getHelperMethodName(int index) {
+        return helperMethodPrefix + index;
+    }
+
+    private String getArguments() {
+        StringBuilder result = new StringBuilder();
+        if (accumulator != null) {
+            result.append(accumulator.name);
+        }
+        for (ParameterSpec parameter : parameters) {
+            if (result.length() > 0) {
+                result.append(", ");
+            }
+            result.append(parameter.name);
+        }
+        return result.toString();
+    }
+
+    /**
+     * A rough (but rather pessimistic) estimate of the bytecode size: each identifier and literal is loaded,
+     * dereferenced or invoked with an instruction of up to 3 bytes, and each invocation needs another 3 bytes.
+     */
+    static int estimateBytecodeSize(CodeBlock code) {
+        String codeString = code.toString();
+        int result = 1;
+        Matcher matcher = TOKEN_PATTERN.matcher(codeString);
+        while (matcher.find()) {
+            result += 3;
+        }
+        for (int i = 0; i < codeString.length(); i++) {
+            if (codeString.charAt(i) == '(') {
+                result += 3;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * The members of a DTO which is generated as final mutable class, see {@link ProcessorOptions.Target#MUTABLE}:
+ * <ul>
+ * <li>the abstract accessors (without parameters) are implemented with fields</li>
+ * <li>{@code copyFrom(source)} sets the fields from the accessors of the source and {@code reset()} sets them to
+ * their default values: so one instance can be reused for many sources without allocations</li>
+ * <li>the fields and the methods with a body are copied</li>
+ * </ul>
+ * Abstract accessors without an accessor on the source and other abstract methods are not supported.
+ */
+class MutableLayout implements MemberSink {
+
+    /**
+     * key: the name of the abstract accessor of the DTO, value: the name of the accessor of the source
+     */
+    private final Map<String, String> sourceAccessorNames;
+    private final List<MethodSpec> accessors = new ArrayList<>();
+    private final MemberList body = new MemberList();
+    private final List<String> unsupportedMembers = new ArrayList<>();
+
+    /**
+     * @param sourceAccessorNames key: the name of the abstract accessor of the DTO, value: the name of the accessor of
+     *                            the source
+     */
+    MutableLayout(Map<String, String> sourceAccessorNames) {
+        this.sourceAccessorNames = sourceAccessorNames;
+    }
+
+    @Override
+    public void addField(FieldSpec fieldSpec) {
+        body.addField(fieldSpec);
+    }
+
+    @Override
+    public void addMethod(MethodSpec methodSpec) {
+        if (!methodSpec.hasModifier(Modifier.ABSTRACT)) {
+            body.addMethod(methodSpec);
+        } else if (methodSpec.parameters.isEmpty() && methodSpec.typeVariables.isEmpty()
+                && !methodSpec.returnType.equals(TypeName.VOID)) {
+            if (sourceAccessorNames.containsKey(methodSpec.name)) {
+                accessors.add(methodSpec);
+            } else {
+                unsupportedMembers.add("method " + methodSpec.name + " (no accessor on the source)");
+            }
+        } else {
+            unsupportedMembers.add("method " + methodSpec.name);
+        }
+    }
+
+    /**
+     * @return the members which cannot be generated in a mutable class, e.g. "method count": when the list is not
+     * empty, the abstract class must be generated instead
+     */
+    List<String> getUnsupportedMembers() {
+        return unsupportedMembers;
+    }
+
+    /**
+     * @param modifiers   the modifiers of the template: abstract is replaced by final
+     * @param sourceTypes the source types of the template: the superclass (if any) must be the first type
+     */
+    TypeSpec.Builder buildTypeSpec(ClassName className, List<AnnotationSpec> annotationSpecs, Set<Modifier> modifiers
+            , List<TypeName> sourceTypes) {
+        Set<Modifier> classModifiers = EnumSet.noneOf(Modifier.class);
+        classModifiers.addAll(modifiers);
+        classModifiers.remove(Modifier.ABSTRACT);
+        classModifiers.add(Modifier.FINAL);
+        TypeSpec.Builder result = TypeSpec.classBuilder(className)
+                .addModifiers(JavaPoetUtil.modifiersAsArray(classModifiers))
+                .addAnnotations(annotationSpecs);
+        Modifier[] methodModifiers = modifiers.contains(Modifier.PUBLIC)
+                ? new Modifier[]{Modifier.PUBLIC} : new Modifier[0];
+
+        for (MethodSpec accessor : accessors) {
+            result.addField(accessor.returnType, accessor.name, Modifier.PRIVATE);
+        }
+        for (MethodSpec accessor : accessors) {
+            result.addMethod(JavaPoetUtil.implementAccessor(accessor));
+        }
+        body.replayTo(MemberSink.of(result));
+
+        if (!sourceTypes.isEmpty()) {
+            TypeVariableName sourceTypeVariable = MapperGenerator.getSourceTypeVariableOrNull(sourceTypes);
+            TypeName sourceType = sourceTypeVariable == null ? sourceTypes.get(0) : sourceTypeVariable;
+            MethodSplitter assignments = MethodSplitter.statements("copyFrom")
+                    .addParameter(sourceType, "source");
+            for (MethodSpec accessor : accessors) {
+                assignments.addStatement("this.$N = source.$N()", accessor.name, sourceAccessorNames.get(accessor.name));
+            }
+            MethodSpec.Builder copyFrom = MethodSpec.methodBuilder("copyFrom")
+                    .addJavadoc("sets the values of the accessors from the source: no objects are allocated\n\n"
+                            + "@return this DTO\n")
+                    .addModifiers(methodModifiers)
+                    .returns(className)
+                    .addParameter(sourceType, "source")
+                    .addCode(assignments.getCode())
+                    .addStatement("return this");
+            if (sourceTypeVariable != null) {
+                copyFrom.addTypeVariable(sourceTypeVariable);
+                assignments.addTypeVariable(sourceTypeVariable);
+            }
+            result.addMethod(copyFrom.build());
+            result.addMethods(assignments.getHelperMethods(Modifier.PRIVATE));
+        }
+
+        MethodSplitter defaults = MethodSplitter.statements("reset");
+        for (MethodSpec accessor : accessors) {
+            defaults.addStatement("this.$N = $L", accessor.name, getDefaultValue(accessor.returnType));
+        }
+        result.addMethod(MethodSpec.methodBuilder("reset")
+                .addJavadoc("sets the values of the accessors to their default values: null, 0 or false\n\n"
+                        + "@return this DTO\n")
+                .addModifiers(methodModifiers)
+                .returns(className)
+                .addCode(defaults.getCode())
+                .addStatement("return this")
+                .build());
+        result.addMethods(defaults.getHelperMethods(Modifier.PRIVATE));
+        return result;
+    }
+
+    private static String getDefaultValue(TypeName type) {
+        if (type.equals(TypeName.BOOLEAN)) {
+            return "false";
+        }
+        return type.isPrimitive() ? "0" : "null";
+    }
+}
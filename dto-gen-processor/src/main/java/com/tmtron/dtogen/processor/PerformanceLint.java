@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Reports warnings for members of the DTOs which are known to hurt the runtime performance, see
+ * {@link ProcessorOptions#LINT}.
+ * <ul>
+ * <li>accessors which return a boxed primitive (e.g. {@code Integer} instead of {@code int})</li>
+ * <li>final instance fields with a constant initializer: the value is stored in every instance</li>
+ * <li>method bodies with more lines than {@link ProcessorOptions#LINT_MAX_BODY_LINES}</li>
+ * <li>accessors which return a collection or a map</li>
+ * </ul>
+ * The warnings are reported on the member of the template or, for members of the sources, on the template.
+ * This class must only be used on the javac thread.
+ */
+class PerformanceLint {
+
+    private static final String PREFIX = "dto-gen performance: ";
+
+    private final ProcessingEnvironment processingEnv;
+    private final Types types;
+    private final int maxBodyLines;
+    private final TypeMirror collectionType;
+    private final TypeMirror mapType;
+
+    PerformanceLint(ProcessingEnvironment processingEnv, ProcessorOptions options) {
+        this.processingEnv = processingEnv;
+        this.types = processingEnv.getTypeUtils();
+        this.maxBodyLines = options.getLintMaxBodyLines();
+        Elements elements = processingEnv.getElementUtils();
+        this.collectionType = types.erasure(elements.getTypeElement("java.util.Collection").asType());
+        this.mapType = types.erasure(elements.getTypeElement("java.util.Map").asType());
+    }
+
+    /**
+     * @param method   a method of the template or of a source that is copied to the DTO
+     * @param body     the copied method body or blank
+     * @param template the template of the DTO
+     */
+    void checkMethod(ExecutableElement method, String body, TypeElement template) {
+        if (isAccessor(method)) {
+            TypeMirror returnType = method.getReturnType();
+            if (isBoxedPrimitive(returnType)) {
+                warn("the accessor " + getName(method) + " returns the boxed type " + returnType + ": use "
+                        + types.unboxedType(returnType) + " unless null is a valid value", method, template);
+            }
+            TypeMirror erasedReturnType = types.erasure(returnType);
+            if (types.isAssignable(erasedReturnType, collectionType) || types.isAssignable(erasedReturnType, mapType)) {
+                warn("the accessor " + getName(method) + " returns the unbounded collection " + returnType
+                        + ": consider a bounded or paged accessor", method, template);
+            }
+        }
+        int bodyLines = getLineCount(body);
+        if (bodyLines > maxBodyLines) {
+            warn("the copied body of " + getName(method) + " has " + bodyLines + " lines (more than "
+                    + maxBodyLines + "): it is duplicated in the DTO, consider a shared helper", method, template);
+        }
+    }
+
+    /**
+     * @param field       a field of the template that is copied to the DTO
+     * @param initializer the copied initializer or blank
+     */
+    void checkField(VariableElement field, String initializer) {
+        if (initializer.isEmpty() || field.getModifiers().contains(Modifier.STATIC)) {
+            return;
+        }
+        if (field.getModifiers().contains(Modifier.FINAL) && field.getConstantValue() != null) {
+            warn("the final field " + field.getSimpleName() + " has the constant initializer " + initializer
+                    + ": it is stored in every instance, consider a static field", field, null);
+        }
+    }
+
+    private static boolean isAccessor(ExecutableElement method) {
+        return method.getParameters().isEmpty() && method.getReturnType().getKind() != TypeKind.VOID;
+    }
+
+    private boolean isBoxedPrimitive(TypeMirror typeMirror) {
+        if (typeMirror.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        try {
+            types.unboxedType(typeMirror);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the number of non-blank lines
+     */
+    private static int getLineCount(String code) {
+        int result = 0;
+        for (String line : code.split("\n")) {
+            if (!line.trim().isEmpty()) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private static String getName(ExecutableElement method) {
+        return method.getEnclosingElement().getSimpleName() + "." + method.getSimpleName();
+    }
+
+    /**
+     * @param template when the member is not declared in the template, the warning is reported on the template
+     */
+    private void warn(String message, Element member, TypeElement template) {
+        Element element = template == null || member.getEnclosingElement().equals(template)
+                ? member : template;
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, PREFIX + message, element);
+    }
+}
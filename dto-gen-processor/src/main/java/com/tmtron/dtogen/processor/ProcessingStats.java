@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Collects the {@link TemplateStats} of all rounds and writes the JSON report, see {@link ProcessorOptions#STATS}
+ */
+class ProcessingStats {
+
+    private final Path reportFile;
+    private final List<TemplateStats> templateStatsList = new ArrayList<>();
+
+    /**
+     * @param reportFile the JSON report file
+     */
+    ProcessingStats(Path reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    void add(TemplateStats templateStats) {
+        templateStatsList.add(templateStats);
+    }
+
+    /**
+     * @return the sum of the stats of all templates
+     */
+    TemplateStats getTotal() {
+        TemplateStats total = new TemplateStats("total");
+        for (TemplateStats templateStats : templateStatsList) {
+            total.add(templateStats);
+        }
+        return total;
+    }
+
+    /**
+     * @return e.g. "dto-gen: 3 templates (1 from cache), 12 members copied, 1 ignored, 2 renamed in 23.456 ms"
+     */
+    String getSummary() {
+        TemplateStats total = getTotal();
+        int fromCache = 0;
+        for (TemplateStats templateStats : templateStatsList) {
+            if (templateStats.isFromCache()) {
+                fromCache++;
+            }
+        }
+        long totalNanos = total.getMemberAnalysisNanos() + total.getCodeScanNanos() + total.getTypeSpecNanos()
+                + total.getRenderNanos() + total.getFilerWriteNanos();
+        return "dto-gen: " + templateStatsList.size() + " templates (" + fromCache + " from cache), "
+                + total.getMembersCopied() + " members copied, "
+                + total.getMembersIgnored() + " ignored, "
+                + total.getMembersRenamed() + " renamed in "
+                + toMillis(totalNanos) + " ms";
+    }
+
+    /**
+     * Writes the JSON report: the file is overwritten with the stats of all rounds
+     */
+    void writeReport() throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"templateCount\": ").append(templateStatsList.size()).append(",\n");
+        json.append("  \"total\": ");
+        appendTemplateStats(json, getTotal(), "  ");
+        json.append(",\n");
+        json.append("  \"templates\": [");
+        for (int i = 0; i < templateStatsList.size(); i++) {
+            json.append(i == 0 ? "\n    " : ",\n    ");
+            appendTemplateStats(json, templateStatsList.get(i), "    ");
+        }
+        json.append("\n  ]\n");
+        json.append("}\n");
+
+        Path parent = reportFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.write(reportFile, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void appendTemplateStats(StringBuilder json, TemplateStats stats, String indent) {
+        String memberIndent = indent + "  ";
+        json.append("{\n");
+        json.append(memberIndent).append("\"template\": \"").append(escape(stats.getTemplateName())).append("\",\n");
+        json.append(memberIndent).append("\"fromCache\": ").append(stats.isFromCache()).append(",\n");
+        json.append(memberIndent).append("\"memberAnalysisMillis\": ")
+                .append(toMillis(stats.getMemberAnalysisNanos())).append(",\n");
+        json.append(memberIndent).append("\"codeScanMillis\": ")
+                .append(toMillis(stats.getCodeScanNanos())).append(",\n");
+        json.append(memberIndent).append("\"typeSpecMillis\": ")
+                .append(toMillis(stats.getTypeSpecNanos())).append(",\n");
+        json.append(memberIndent).append("\"renderMillis\": ")
+                .append(toMillis(stats.getRenderNanos())).append(",\n");
+        json.append(memberIndent).append("\"filerWriteMillis\": ")
+                .append(toMillis(stats.getFilerWriteNanos())).append(",\n");
+        json.append(memberIndent).append("\"membersCopied\": ").append(stats.getMembersCopied()).append(",\n");
+        json.append(memberIndent).append("\"membersIgnored\": ").append(stats.getMembersIgnored()).append(",\n");
+        json.append(memberIndent).append("\"membersRenamed\": ").append(stats.getMembersRenamed()).append("\n");
+        json.append(indent).append("}");
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
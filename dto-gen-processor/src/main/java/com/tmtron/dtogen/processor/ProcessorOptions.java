@@ -0,0 +1,324 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The options of the annotation processor. Options are passed to the compiler with {@code -A<key>=<value>}.
+ */
+class ProcessorOptions {
+
+    /**
+     * When true, the generated files do not depend on the time of the build: i.e. the {@code date} of the
+     * {@link javax.annotation.Generated} annotation is omitted.
+     * <p>
+     * e.g. {@code -Adtogen.reproducible=true}
+     * </p>
+     */
+    static final String REPRODUCIBLE = "dtogen.reproducible";
+
+    /**
+     * When true (the default), the source files of a round are rendered in parallel.
+     * <p>
+     * e.g. {@code -Adtogen.parallel=false}
+     * </p>
+     */
+    static final String PARALLEL = "dtogen.parallel";
+
+    /**
+     * The directory for the {@link GeneratedSourceCache}: when the option is not set, the cache is not used.
+     * <p>
+     * e.g. {@code -Adtogen.cacheDir=build/dtogen-cache}
+     * </p>
+     */
+    static final String CACHE_DIR = "dtogen.cacheDir";
+
+    /**
+     * The JSON report file for the {@link ProcessingStats}: when the option is not set, no stats are reported.
+     * <p>
+     * e.g. {@code -Adtogen.stats=build/reports/dtogen/stats.json}
+     * </p>
+     */
+    static final String STATS = "dtogen.stats";
+
+    /**
+     * The qualified name of the registry class for the {@link DtoIndex}: when the option is not set, neither the
+     * registry class nor the index resource are generated.
+     * <p>
+     * e.g. {@code -Adtogen.registry=com.example.dto.DtoRegistry}
+     * </p>
+     */
+    static final String REGISTRY = "dtogen.registry";
+
+    /**
+     * Templates with more members (including the members of their sources) are not rendered in memory, but streamed
+     * to the generated file, see {@link StreamingDtoWriter}. The default is {@value #DEFAULT_STREAMING_THRESHOLD}.
+     * <p>
+     * e.g. {@code -Adtogen.streamingThreshold=500}
+     * </p>
+     */
+    static final String STREAMING_THRESHOLD = "dtogen.streamingThreshold";
+
+    static final int DEFAULT_STREAMING_THRESHOLD = 1000;
+
+    /**
+     * When true, the {@link PerformanceLint} reports warnings for members that are known to hurt the runtime
+     * performance. The generated source cache is not used, because the warnings are only reported when the template
+     * is processed.
+     * <p>
+     * e.g. {@code -Adtogen.lint=true}
+     * </p>
+     */
+    static final String LINT = "dtogen.lint";
+
+    /**
+     * The {@link PerformanceLint} reports copied method bodies with more non-blank lines. The default is
+     * {@value #DEFAULT_LINT_MAX_BODY_LINES}.
+     * <p>
+     * e.g. {@code -Adtogen.lintMaxBodyLines=50}
+     * </p>
+     */
+    static final String LINT_MAX_BODY_LINES = "dtogen.lintMaxBodyLines";
+
+    static final int DEFAULT_LINT_MAX_BODY_LINES = 30;
+
+    /**
+     * The kind of the generated DTOs for class templates, see {@link Target}. The default is {@code class}.
+     * <p>
+     * e.g. {@code -Adtogen.target=record}
+     * </p>
+     */
+    static final String TARGET = "dtogen.target";
+
+    /**
+     * When true, a mapper is generated for each DTO: e.g. {@code UserDtoMapper.from(user)} creates the DTO by calling
+     * the accessors of the source, see {@link MapperGenerator}.
+     * <p>
+     * e.g. {@code -Adtogen.mappers=true}
+     * </p>
+     */
+    static final String MAPPERS = "dtogen.mappers";
+
+    /**
+     * When true, the mappers (see {@link #MAPPERS}) also contain bulk methods for lists, collections and arrays and
+     * a parallel method for large lists.
+     * <p>
+     * e.g. {@code -Adtogen.bulkMappers=true}
+     * </p>
+     */
+    static final String BULK_MAPPERS = "dtogen.bulkMappers";
+
+    /**
+     * The default threshold of the parallel bulk mapping: each fork-join task maps at most this number of sources.
+     * The default is {@value #DEFAULT_PARALLEL_MAPPER_THRESHOLD}.
+     * <p>
+     * e.g. {@code -Adtogen.parallelMapperThreshold=10000}
+     * </p>
+     */
+    static final String PARALLEL_MAPPER_THRESHOLD = "dtogen.parallelMapperThreshold";
+
+    static final int DEFAULT_PARALLEL_MAPPER_THRESHOLD = 4096;
+
+    /**
+     * When true, a JSON writer is generated for each DTO: e.g. {@code UserDtoJsonWriter.writeJson(userDto, out)}
+     * calls the accessors of the DTO directly, see {@link JsonWriterGenerator}.
+     * <p>
+     * e.g. {@code -Adtogen.jsonWriters=true}
+     * </p>
+     */
+    static final String JSON_WRITERS = "dtogen.jsonWriters";
+
+    enum Target {
+        /**
+         * an abstract class with the members of the template and its sources
+         */
+        CLASS,
+        /**
+         * a record with the accessors as record components: when the source version is older than 16, or when the
+         * DTO has members which are not supported in records, a class is generated
+         */
+        RECORD,
+        /**
+         * a final class with final fields for the accessors, a constructor, equals and a cached hashCode, see
+         * {@link ImmutableLayout}: templates with the annotation {@code org.immutables.value.Value.Immutable} and
+         * DTOs with unsupported members are generated as abstract class
+         */
+        IMMUTABLE,
+        /**
+         * a final class with fields for the accessors, {@code copyFrom(source)} and {@code reset()}, so that one
+         * instance can be reused, see {@link MutableLayout}: templates with the annotation
+         * {@code org.immutables.value.Value.Immutable} and DTOs with unsupported members are generated as abstract
+         * class
+         */
+        MUTABLE
+    }
+
+    private final boolean reproducible;
+    private final boolean parallel;
+    private final Path cacheDirectory;
+    private final Path statsReportFile;
+    private final String registryClassName;
+    private final int streamingThreshold;
+    private final boolean lint;
+    private final int lintMaxBodyLines;
+    private final Target target;
+    private final boolean mappers;
+    private final boolean bulkMappers;
+    private final int parallelMapperThreshold;
+    private final boolean jsonWriters;
+
+    ProcessorOptions(Map<String, String> options) {
+        this.reproducible = getBoolean(options, REPRODUCIBLE, false);
+        this.parallel = getBoolean(options, PARALLEL, true);
+        this.cacheDirectory = getPathOrNull(options, CACHE_DIR);
+        this.statsReportFile = getPathOrNull(options, STATS);
+        this.registryClassName = getStringOrNull(options, REGISTRY);
+        this.streamingThreshold = getInt(options, STREAMING_THRESHOLD, DEFAULT_STREAMING_THRESHOLD);
+        this.lint = getBoolean(options, LINT, false);
+        this.lintMaxBodyLines = getInt(options, LINT_MAX_BODY_LINES, DEFAULT_LINT_MAX_BODY_LINES);
+        this.target = getTarget(options);
+        this.mappers = getBoolean(options, MAPPERS, false);
+        this.bulkMappers = getBoolean(options, BULK_MAPPERS, false);
+        this.parallelMapperThreshold = getInt(options, PARALLEL_MAPPER_THRESHOLD, DEFAULT_PARALLEL_MAPPER_THRESHOLD);
+        this.jsonWriters = getBoolean(options, JSON_WRITERS, false);
+        if (parallelMapperThreshold < 1) {
+            throw new IllegalArgumentException("The option " + PARALLEL_MAPPER_THRESHOLD + " must be positive: "
+                    + parallelMapperThreshold);
+        }
+    }
+
+    static Set<String> getSupportedOptions() {
+        return ImmutableSet.of(REPRODUCIBLE, PARALLEL, CACHE_DIR, STATS, REGISTRY, STREAMING_THRESHOLD, LINT
+                , LINT_MAX_BODY_LINES, TARGET, MAPPERS, BULK_MAPPERS, PARALLEL_MAPPER_THRESHOLD, JSON_WRITERS);
+    }
+
+    private static boolean getBoolean(Map<String, String> options, String key, boolean defaultValue) {
+        if (!options.containsKey(key)) {
+            return defaultValue;
+        }
+        String value = options.get(key);
+        // "-Akey" without a value is passed as null
+        return value == null || Boolean.parseBoolean(value);
+    }
+
+    static String getStringOrNull(Map<String, String> options, String key) {
+        String value = options.get(key);
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static int getInt(Map<String, String> options, String key, int defaultValue) {
+        String value = options.get(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The option " + key + " must be a number: " + value, e);
+        }
+    }
+
+    private static Target getTarget(Map<String, String> options) {
+        String value = getStringOrNull(options, TARGET);
+        if (value == null) {
+            return Target.CLASS;
+        }
+        for (Target target : Target.values()) {
+            if (target.name().equalsIgnoreCase(value.trim())) {
+                return target;
+            }
+        }
+        throw new IllegalArgumentException("The option " + TARGET + " must be one of "
+                + Arrays.toString(Target.values()).toLowerCase(Locale.ROOT) + ": " + value);
+    }
+
+    private static Path getPathOrNull(Map<String, String> options, String key) {
+        String value = options.get(key);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return Paths.get(value);
+    }
+
+    boolean isReproducible() {
+        return reproducible;
+    }
+
+    boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * @return the directory for the {@link GeneratedSourceCache} or null
+     */
+    Path getCacheDirectoryOrNull() {
+        return cacheDirectory;
+    }
+
+    /**
+     * @return the JSON report file for the {@link ProcessingStats} or null
+     */
+    Path getStatsReportFileOrNull() {
+        return statsReportFile;
+    }
+
+    /**
+     * @return the qualified name of the registry class for the {@link DtoIndex} or null
+     */
+    String getRegistryClassNameOrNull() {
+        return registryClassName;
+    }
+
+    int getStreamingThreshold() {
+        return streamingThreshold;
+    }
+
+    boolean isLint() {
+        return lint;
+    }
+
+    int getLintMaxBodyLines() {
+        return lintMaxBodyLines;
+    }
+
+    Target getTarget() {
+        return target;
+    }
+
+    boolean isMappers() {
+        return mappers;
+    }
+
+    boolean isBulkMappers() {
+        return bulkMappers;
+    }
+
+    int getParallelMapperThreshold() {
+        return parallelMapperThreshold;
+    }
+
+    boolean isJsonWriters() {
+        return jsonWriters;
+    }
+}
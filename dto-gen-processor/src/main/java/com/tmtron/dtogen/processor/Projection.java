@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * A projection of a template (see {@link DtoProjection}): it filters and renames the members of the DTO of the
+ * template, so that all projections share the member analysis of the template.
+ */
+class Projection {
+
+    private final String name;
+    private final Set<String> include;
+    private final Set<String> ignore;
+    /**
+     * key: name of the member in the DTO of the template
+     * value: name in the projection
+     */
+    private final Map<String, String> renameFromTo = new HashMap<>();
+
+    private Projection(DtoProjection dtoProjection) {
+        this.name = dtoProjection.name();
+        if (!SourceVersion.isIdentifier(name) || SourceVersion.isKeyword(name)) {
+            throw new IllegalArgumentException("The projection name must be a valid class name: " + name);
+        }
+        this.include = new HashSet<>(Arrays.asList(dtoProjection.include()));
+        this.ignore = new HashSet<>(Arrays.asList(dtoProjection.ignore()));
+        for (String rename : dtoProjection.rename()) {
+            String[] fromTo = rename.split("=", -1);
+            if (fromTo.length != 2 || !SourceVersion.isIdentifier(fromTo[0].trim())
+                    || !SourceVersion.isIdentifier(fromTo[1].trim())) {
+                throw new IllegalArgumentException("Invalid rename of the projection " + name + ": " + rename
+                        + " (expected: name=newName)");
+            }
+            renameFromTo.put(fromTo[0].trim(), fromTo[1].trim());
+        }
+    }
+
+    /**
+     * @return the projections of the template (see {@link DtoConfig#projections()}) or an empty list
+     * @throws IllegalArgumentException when a projection is invalid
+     */
+    static List<Projection> of(TypeElement template) {
+        List<Projection> result = new ArrayList<>();
+        DtoConfig dtoConfig = template.getAnnotation(DtoConfig.class);
+        if (dtoConfig == null) {
+            return result;
+        }
+        Set<String> names = new HashSet<>();
+        for (DtoProjection dtoProjection : dtoConfig.projections()) {
+            Projection projection = new Projection(dtoProjection);
+            if (!names.add(projection.getName())) {
+                throw new IllegalArgumentException("Duplicate projection name: " + projection.getName());
+            }
+            result.add(projection);
+        }
+        return result;
+    }
+
+    /**
+     * @return the simple name of the DTO of the projection
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return a sink which passes the members of this projection to the target sink
+     */
+    Sink filter(MemberSink target) {
+        return new Sink(target);
+    }
+
+    /**
+     * @param memberName the name of a member of the projection
+     * @return the name of the member in the DTO of the template
+     */
+    String getOriginalName(String memberName) {
+        for (Map.Entry<String, String> fromTo : renameFromTo.entrySet()) {
+            if (fromTo.getValue().equals(memberName)) {
+                return fromTo.getKey();
+            }
+        }
+        return memberName;
+    }
+
+    private boolean isIncluded(String memberName) {
+        return (include.isEmpty() || include.contains(memberName)) && !ignore.contains(memberName);
+    }
+
+    class Sink implements MemberSink {
+        private final MemberSink target;
+        private final Set<String> memberNames = new HashSet<>();
+
+        private Sink(MemberSink target) {
+            this.target = target;
+        }
+
+        @Override
+        public void addField(FieldSpec fieldSpec) {
+            memberNames.add(fieldSpec.name);
+            if (!isIncluded(fieldSpec.name)) {
+                return;
+            }
+            String newName = renameFromTo.get(fieldSpec.name);
+            target.addField(newName == null ? fieldSpec : rename(fieldSpec, newName));
+        }
+
+        @Override
+        public void addMethod(MethodSpec methodSpec) {
+            memberNames.add(methodSpec.name);
+            if (!isIncluded(methodSpec.name)) {
+                return;
+            }
+            String newName = renameFromTo.get(methodSpec.name);
+            target.addMethod(newName == null ? methodSpec : rename(methodSpec, newName));
+        }
+
+        /**
+         * @return the names of the projection that do not match any member of the DTO: e.g. typos
+         */
+        Set<String> getUnknownNames() {
+            Set<String> result = new LinkedHashSet<>();
+            result.addAll(include);
+            result.addAll(ignore);
+            result.addAll(renameFromTo.keySet());
+            result.removeAll(memberNames);
+            return result;
+        }
+    }
+
+    private static FieldSpec rename(FieldSpec fieldSpec, String newName) {
+        return FieldSpec.builder(fieldSpec.type, newName, fieldSpec.modifiers.toArray(new Modifier[0]))
+                .addJavadoc(fieldSpec.javadoc)
+                .addAnnotations(fieldSpec.annotations)
+                .initializer(fieldSpec.initializer)
+                .build();
+    }
+
+    private static MethodSpec rename(MethodSpec methodSpec, String newName) {
+        MethodSpec.Builder result = MethodSpec.methodBuilder(newName)
+                .addJavadoc(methodSpec.javadoc)
+                .addAnnotations(methodSpec.annotations)
+                .addModifiers(methodSpec.modifiers)
+                .addTypeVariables(methodSpec.typeVariables)
+                .returns(methodSpec.returnType)
+                .addParameters(methodSpec.parameters)
+                .varargs(methodSpec.varargs)
+                .addExceptions(methodSpec.exceptions)
+                .addCode(methodSpec.code);
+        if (methodSpec.defaultValue != null) {
+            result.defaultValue(methodSpec.defaultValue);
+        }
+        return result.build();
+    }
+}
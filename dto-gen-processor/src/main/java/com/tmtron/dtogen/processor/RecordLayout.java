@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * The members of a DTO which is generated as record, see {@link ProcessorOptions.Target#RECORD}:
+ * <ul>
+ * <li>the abstract accessors (without parameters) become the record components</li>
+ * <li>the static fields and the methods with a body are copied to the record body</li>
+ * </ul>
+ * Other members (instance fields and other abstract methods) are not supported in a record and the canonical
+ * constructor is limited to the {@link JavaPoetUtil#MAX_PARAMETER_SLOTS}.
+ * <p>
+ * JavaPoet cannot render records: so the record is written with the {@link StreamingDtoWriter}.
+ * </p>
+ */
+class RecordLayout implements MemberSink {
+
+    private static final ClassName OVERRIDE = ClassName.get(Override.class);
+
+    private final List<ParameterSpec> components = new ArrayList<>();
+    private final MemberList body = new MemberList();
+    private final List<String> unsupportedMembers = new ArrayList<>();
+    private int parameterSlots = 1;
+
+    @Override
+    public void addField(FieldSpec fieldSpec) {
+        if (fieldSpec.hasModifier(Modifier.STATIC)) {
+            body.addField(fieldSpec);
+        } else {
+            unsupportedMembers.add("field " + fieldSpec.name);
+        }
+    }
+
+    @Override
+    public void addMethod(MethodSpec methodSpec) {
+        if (!methodSpec.hasModifier(Modifier.ABSTRACT)) {
+            body.addMethod(methodSpec);
+        } else if (methodSpec.parameters.isEmpty() && methodSpec.typeVariables.isEmpty()
+                && !methodSpec.returnType.equals(TypeName.VOID)) {
+            ParameterSpec.Builder component = ParameterSpec.builder(methodSpec.returnType, methodSpec.name);
+            for (AnnotationSpec annotationSpec : methodSpec.annotations) {
+                // the accessor of the component does not override anything in the record
+                if (!annotationSpec.type.equals(OVERRIDE)) {
+                    component.addAnnotation(annotationSpec);
+                }
+            }
+            components.add(component.build());
+            parameterSlots += JavaPoetUtil.getParameterSlots(methodSpec.returnType);
+        } else {
+            unsupportedMembers.add("method " + methodSpec.name);
+        }
+    }
+
+    /**
+     * @return the members which cannot be generated in a record, e.g. "field count": when the list is not empty, a
+     * class must be generated instead
+     */
+    List<String> getUnsupportedMembers() {
+        if (parameterSlots <= JavaPoetUtil.MAX_PARAMETER_SLOTS) {
+            return unsupportedMembers;
+        }
+        List<String> result = new ArrayList<>(unsupportedMembers);
+        result.add("canonical constructor (the components need " + parameterSlots + " of max. "
+                + JavaPoetUtil.MAX_PARAMETER_SLOTS + " parameter slots)");
+        return result;
+    }
+
+    /**
+     * writes the record: the types are written with their qualified names
+     *
+     * @param modifiers the modifiers of the template: abstract is removed
+     */
+    void writeTo(Writer writer, String packageName, List<AnnotationSpec> annotationSpecs, Set<Modifier> modifiers
+            , String simpleName) throws IOException {
+        Set<Modifier> recordModifiers = EnumSet.noneOf(Modifier.class);
+        recordModifiers.addAll(modifiers);
+        recordModifiers.remove(Modifier.ABSTRACT);
+        StreamingDtoWriter streamingDtoWriter = StreamingDtoWriter.forRecord(writer, packageName, annotationSpecs
+                , recordModifiers, simpleName, components);
+        body.replayTo(streamingDtoWriter);
+        streamingDtoWriter.finish();
+    }
+}
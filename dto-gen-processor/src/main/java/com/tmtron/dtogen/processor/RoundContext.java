@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+
+/**
+ * The helpers which are shared by all templates of a round: they cache information from the javac model, which is
+ * only valid in one round.
+ */
+class RoundContext {
+
+    private final CodeScanner codeScanner;
+    private final SourceHierarchy sourceHierarchy;
+    private final JavaPoetUtil javaPoetUtil;
+
+    RoundContext(ProcessingEnvironment processingEnv) {
+        this.codeScanner = new CodeScanner(processingEnv);
+        this.sourceHierarchy = new SourceHierarchy(processingEnv);
+        this.javaPoetUtil = new JavaPoetUtil(processingEnv.getElementUtils());
+    }
+
+    CodeScanner getCodeScanner() {
+        return codeScanner;
+    }
+
+    SourceHierarchy getSourceHierarchy() {
+        return sourceHierarchy;
+    }
+
+    JavaPoetUtil getJavaPoetUtil() {
+        return javaPoetUtil;
+    }
+}
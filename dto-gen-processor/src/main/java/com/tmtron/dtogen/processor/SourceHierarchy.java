@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+
+/**
+ * The flattened method tables of the source types (i.e. the superclasses and interfaces of the templates).
+ * <p>
+ * The method table of a source type contains the methods which are declared in the type, followed by the inherited
+ * methods of its superclass and then of its interfaces (each in the order of its own method table).
+ * An inherited method is omitted, when the table already contains a method with the same signature: so overridden
+ * methods are collapsed and the superclass chain takes priority over the interfaces.
+ * </p>
+ * <p>
+ * Each method table is only resolved once: the source hierarchy should be shared by all templates of a round.
+ * </p>
+ */
+class SourceHierarchy {
+
+    private final Types types;
+    private final Map<TypeElement, List<ExecutableElement>> methodsByType = new HashMap<>();
+
+    SourceHierarchy(ProcessingEnvironment processingEnv) {
+        this.types = processingEnv.getTypeUtils();
+    }
+
+    /**
+     * @return the declared and inherited methods of the type (without the methods of {@link Object})
+     */
+    List<ExecutableElement> getMethods(TypeElement type) {
+        List<ExecutableElement> result = methodsByType.get(type);
+        if (result == null) {
+            result = resolveMethods(type);
+            methodsByType.put(type, result);
+        }
+        return result;
+    }
+
+    private List<ExecutableElement> resolveMethods(TypeElement type) {
+        DeclaredType declaredType = (DeclaredType) type.asType();
+        List<ExecutableElement> result = new ArrayList<>(ElementFilter.methodsIn(type.getEnclosedElements()));
+        /* key: the method name
+         * value: the methods of the result with this name
+         */
+        Map<String, List<ExecutableElement>> methodsByName = new HashMap<>();
+        for (ExecutableElement method : result) {
+            getMethodsWithName(methodsByName, method).add(method);
+        }
+
+        TypeElement superclass = getTypeElementOrNull(type.getSuperclass());
+        if (superclass != null && !superclass.getQualifiedName().contentEquals(Object.class.getCanonicalName())) {
+            addInheritedMethods(declaredType, superclass, methodsByName, result);
+        }
+        for (TypeMirror interfaceType : type.getInterfaces()) {
+            TypeElement interfaceElement = getTypeElementOrNull(interfaceType);
+            if (interfaceElement != null) {
+                addInheritedMethods(declaredType, interfaceElement, methodsByName, result);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private void addInheritedMethods(DeclaredType declaredType, TypeElement supertype
+            , Map<String, List<ExecutableElement>> methodsByName, List<ExecutableElement> result) {
+        for (ExecutableElement method : getMethods(supertype)) {
+            if (method.getModifiers().contains(Modifier.PRIVATE) || method.getModifiers().contains(Modifier.STATIC)) {
+                // not inherited
+                continue;
+            }
+            List<ExecutableElement> methodsWithName = getMethodsWithName(methodsByName, method);
+            if (!containsSameSignature(declaredType, methodsWithName, method)) {
+                methodsWithName.add(method);
+                result.add(method);
+            }
+        }
+    }
+
+    private boolean containsSameSignature(DeclaredType declaredType, List<ExecutableElement> methods
+            , ExecutableElement method) {
+        ExecutableType methodType = null;
+        for (ExecutableElement existingMethod : methods) {
+            if (existingMethod.equals(method)) {
+                // e.g. inherited via 2 interfaces
+                return true;
+            }
+            if (existingMethod.getParameters().size() != method.getParameters().size()) {
+                continue;
+            }
+            if (methodType == null) {
+                methodType = (ExecutableType) types.asMemberOf(declaredType, method);
+            }
+            ExecutableType existingMethodType = (ExecutableType) types.asMemberOf(declaredType, existingMethod);
+            if (types.isSubsignature(existingMethodType, methodType)
+                    || types.isSubsignature(methodType, existingMethodType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<ExecutableElement> getMethodsWithName(Map<String, List<ExecutableElement>> methodsByName
+            , ExecutableElement method) {
+        return methodsByName.computeIfAbsent(method.getSimpleName().toString(), name -> new ArrayList<>());
+    }
+
+    private TypeElement getTypeElementOrNull(TypeMirror typeMirror) {
+        if (typeMirror.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement) types.asElement(typeMirror);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * Writes the members of a DTO directly to a writer: used for very wide templates, see
+ * {@link ProcessorOptions#STREAMING_THRESHOLD}.
+ * <p>
+ * In contrast to {@link com.squareup.javapoet.JavaFile}, the type is never completely held in memory: each member
+ * is rendered and written as soon as it is added, so the memory is bounded by the largest member.
+ * Because the imports of a java file must be written before the members, all types are written with their
+ * qualified names.
+ * </p>
+ */
+class StreamingDtoWriter implements MemberSink {
+
+    private static final String INDENT = "  ";
+
+    private final Writer writer;
+
+    /**
+     * writes the header of the type: the package declaration, the annotations and the type declaration
+     *
+     * @param typeKeyword e.g. "class"
+     */
+    StreamingDtoWriter(Writer writer, String packageName, List<AnnotationSpec> annotationSpecs
+            , Set<Modifier> modifiers, String typeKeyword, String simpleName) throws IOException {
+        this(writer, packageName, annotationSpecs, modifiers, typeKeyword + " " + simpleName);
+    }
+
+    /**
+     * writes the header of a record: the record components are part of the type declaration
+     */
+    static StreamingDtoWriter forRecord(Writer writer, String packageName, List<AnnotationSpec> annotationSpecs
+            , Set<Modifier> modifiers, String simpleName, List<ParameterSpec> components) throws IOException {
+        StringBuilder typeDeclaration = new StringBuilder("record ").append(simpleName).append('(');
+        for (int i = 0; i < components.size(); i++) {
+            if (i > 0) {
+                typeDeclaration.append(", ");
+            }
+            typeDeclaration.append(components.get(i));
+        }
+        typeDeclaration.append(')');
+        return new StreamingDtoWriter(writer, packageName, annotationSpecs, modifiers, typeDeclaration.toString());
+    }
+
+    /**
+     * @param typeDeclaration e.g. "class MyDto"
+     */
+    private StreamingDtoWriter(Writer writer, String packageName, List<AnnotationSpec> annotationSpecs
+            , Set<Modifier> modifiers, String typeDeclaration) throws IOException {
+        this.writer = writer;
+        if (!packageName.isEmpty()) {
+            writer.write("package " + packageName + ";\n\n");
+        }
+        for (AnnotationSpec annotationSpec : annotationSpecs) {
+            writer.write(annotationSpec.toString());
+            writer.write('\n');
+        }
+        for (Modifier modifier : modifiers) {
+            writer.write(modifier.toString());
+            writer.write(' ');
+        }
+        writer.write(typeDeclaration + " {\n");
+    }
+
+    @Override
+    public void addField(FieldSpec fieldSpec) {
+        writeMember(fieldSpec.toString());
+    }
+
+    @Override
+    public void addMethod(MethodSpec methodSpec) {
+        writeMember(methodSpec.toString());
+    }
+
+    /**
+     * @throws UncheckedIOException when the member cannot be written
+     */
+    private void writeMember(String member) {
+        try {
+            writer.write('\n');
+            String lines = member.endsWith("\n") ? member.substring(0, member.length() - 1) : member;
+            for (String line : lines.split("\n", -1)) {
+                if (!line.isEmpty()) {
+                    writer.write(INDENT);
+                    writer.write(line);
+                }
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * writes the end of the type
+     */
+    void finish() throws IOException {
+        writer.write("}\n");
+    }
+}
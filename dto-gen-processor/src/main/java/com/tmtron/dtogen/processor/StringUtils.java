@@ -34,4 +34,73 @@ public class StringUtils {
         }
         return input;
     }
+
+    /**
+     * @see #removeIndentation(CharSequence, int, int)
+     */
+    public static String removeIndentation(String input) {
+        return removeIndentation(input, 0, input.length());
+    }
+
+    /**
+     * @return the lines of the range without their common leading whitespace (blank lines are ignored and written
+     * as empty lines) and with {@code \n} line breaks, e.g. for code which is indented again when it is emitted.
+     * When there is nothing to remove, the range is returned as one substring.
+     */
+    public static String removeIndentation(CharSequence input, int start, int end) {
+        int indentation = Integer.MAX_VALUE;
+        boolean carriageReturns = false;
+        for (int lineStart = start; lineStart < end; ) {
+            int contentStart = skipIndentation(input, lineStart, end);
+            int lineEnd = findLineBreak(input, contentStart, end);
+            if (contentStart < lineEnd) {
+                indentation = Math.min(indentation, contentStart - lineStart);
+            }
+            carriageReturns |= lineEnd < end && input.charAt(lineEnd) == '\r';
+            lineStart = skipLineBreak(input, lineEnd, end);
+        }
+        if ((indentation == 0 || indentation == Integer.MAX_VALUE) && !carriageReturns) {
+            return input.subSequence(start, end).toString();
+        }
+        StringBuilder result = new StringBuilder(end - start);
+        for (int lineStart = start; lineStart < end; ) {
+            int contentStart = skipIndentation(input, lineStart, end);
+            int lineEnd = findLineBreak(input, contentStart, end);
+            if (contentStart < lineEnd) {
+                result.append(input, lineStart + indentation, lineEnd);
+            }
+            if (lineEnd < end) {
+                result.append('\n');
+            }
+            lineStart = skipLineBreak(input, lineEnd, end);
+        }
+        return result.toString();
+    }
+
+    private static int skipIndentation(CharSequence input, int index, int end) {
+        while (index < end && (input.charAt(index) == ' ' || input.charAt(index) == '\t')) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int findLineBreak(CharSequence input, int index, int end) {
+        while (index < end && input.charAt(index) != '\n' && input.charAt(index) != '\r') {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * @return the index after the line break: "\r\n", "\r" or "\n"
+     */
+    private static int skipLineBreak(CharSequence input, int index, int end) {
+        if (index < end && input.charAt(index) == '\r') {
+            index++;
+        }
+        if (index < end && input.charAt(index) == '\n') {
+            index++;
+        }
+        return index;
+    }
 }
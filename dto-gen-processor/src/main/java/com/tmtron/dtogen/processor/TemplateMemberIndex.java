@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+
+/**
+ * An index of the members of a template which is built once per template.
+ * <p>
+ * The members are keyed by their signature (see {@link #getSignature(ExecutableElement)}), so that overloaded
+ * methods can be distinguished.
+ * </p>
+ */
+class TemplateMemberIndex {
+
+    /**
+     * A member of the template: the dto-gen annotations are only read once
+     */
+    static class TemplateMember {
+        private final Element element;
+        private final boolean ignored;
+        private final boolean renamed;
+
+        private TemplateMember(Element element) {
+            this.element = element;
+            this.ignored = element.getAnnotation(DtoIgnore.class) != null;
+            this.renamed = element.getAnnotation(DtoRename.class) != null;
+        }
+
+        Element getElement() {
+            return element;
+        }
+
+        /**
+         * @return true when the member has a {@link DtoIgnore} annotation
+         */
+        boolean isIgnored() {
+            return ignored;
+        }
+
+        /**
+         * @return true when the member has a {@link DtoRename} annotation
+         */
+        boolean isRenamed() {
+            return renamed;
+        }
+    }
+
+    private final Types types;
+    private final DeclaredType templateType;
+    /**
+     * key: signature of the member
+     * value: the member
+     */
+    private final Map<String, TemplateMember> membersBySignature = new LinkedHashMap<>();
+
+    TemplateMemberIndex(Types types, TypeElement template) {
+        this.types = types;
+        this.templateType = (DeclaredType) template.asType();
+        for (Element element : template.getEnclosedElements()) {
+            membersBySignature.put(getSignature(element), new TemplateMember(element));
+        }
+    }
+
+    /**
+     * @return all members of the template in declaration order
+     */
+    Collection<TemplateMember> getMembers() {
+        return membersBySignature.values();
+    }
+
+    /**
+     * @param signature see {@link #getSignature(ExecutableElement)}
+     * @return the template member with the given signature or null
+     */
+    TemplateMember getOrNull(String signature) {
+        return membersBySignature.get(signature);
+    }
+
+    /**
+     * @return the signature of a member of the template
+     */
+    String getSignature(Element element) {
+        if (element instanceof ExecutableElement) {
+            return getSignature((ExecutableElement) element);
+        } else {
+            return element.getSimpleName().toString();
+        }
+    }
+
+    /**
+     * Returns the signature of a method of the template or of one of its sources (superclass or interfaces).
+     * <p>
+     * The signature consists of the method name and the erased parameter types as seen from the template:
+     * e.g. {@code find(java.lang.String,int)}
+     * </p>
+     */
+    String getSignature(ExecutableElement method) {
+        List<? extends TypeMirror> parameterTypes;
+        if (method.getEnclosingElement().equals(templateType.asElement())) {
+            parameterTypes = ((ExecutableType) method.asType()).getParameterTypes();
+        } else {
+            // resolve the type variables of a generic source: e.g. Source<T>.find(T) is find(String) for a
+            // template that extends Source<String>
+            parameterTypes = ((ExecutableType) types.asMemberOf(templateType, method)).getParameterTypes();
+        }
+        StringBuilder result = new StringBuilder(method.getSimpleName()).append('(');
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            if (i > 0) {
+                result.append(',');
+            }
+            result.append(types.erasure(parameterTypes.get(i)));
+        }
+        return result.append(')').toString();
+    }
+
+    /**
+     * @param methodName the name of a method without parameters
+     * @return the signature of the method, e.g. {@code id()}
+     */
+    static String getSignatureOfMethodWithoutParameters(String methodName) {
+        return methodName + "()";
+    }
+}
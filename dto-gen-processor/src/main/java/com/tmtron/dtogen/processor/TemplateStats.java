@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and counters for a single template, see {@link ProcessingStats}
+ * <p>
+ * The stats are always collected, but only reported when {@link ProcessorOptions#STATS} is set.
+ * </p>
+ * <p>
+ * The source files of a template (e.g. its projections and mappers) share the stats and they are rendered in
+ * parallel: so the render timings are thread-safe, all other values must only be changed on the javac thread.
+ * </p>
+ */
+class TemplateStats {
+
+    private final String templateName;
+    private boolean fromCache;
+
+    private long memberAnalysisNanos;
+    private long codeScanNanos;
+    private final LongAdder typeSpecNanos = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+    private long filerWriteNanos;
+
+    private int membersCopied;
+    private int membersIgnored;
+    private int membersRenamed;
+
+    TemplateStats(String templateName) {
+        this.templateName = templateName;
+    }
+
+    /**
+     * Adds the timings and counters of the other stats to this stats
+     */
+    void add(TemplateStats other) {
+        memberAnalysisNanos += other.memberAnalysisNanos;
+        codeScanNanos += other.codeScanNanos;
+        typeSpecNanos.add(other.getTypeSpecNanos());
+        renderNanos.add(other.getRenderNanos());
+        filerWriteNanos += other.filerWriteNanos;
+        membersCopied += other.membersCopied;
+        membersIgnored += other.membersIgnored;
+        membersRenamed += other.membersRenamed;
+    }
+
+    String getTemplateName() {
+        return templateName;
+    }
+
+    boolean isFromCache() {
+        return fromCache;
+    }
+
+    void setFromCache(boolean fromCache) {
+        this.fromCache = fromCache;
+    }
+
+    /**
+     * @return the time spent in the analysis of the template and its sources, without the time for the code scans
+     */
+    long getMemberAnalysisNanos() {
+        return memberAnalysisNanos;
+    }
+
+    void addMemberAnalysisNanos(long nanos) {
+        memberAnalysisNanos += nanos;
+    }
+
+    /**
+     * @return the time spent in the {@link CodeScanner}
+     */
+    long getCodeScanNanos() {
+        return codeScanNanos;
+    }
+
+    void addCodeScanNanos(long nanos) {
+        codeScanNanos += nanos;
+    }
+
+    /**
+     * @return the time spent to build the TypeSpec
+     */
+    long getTypeSpecNanos() {
+        return typeSpecNanos.sum();
+    }
+
+    void addTypeSpecNanos(long nanos) {
+        typeSpecNanos.add(nanos);
+    }
+
+    /**
+     * @return the time spent to render the java source code
+     */
+    long getRenderNanos() {
+        return renderNanos.sum();
+    }
+
+    void addRenderNanos(long nanos) {
+        renderNanos.add(nanos);
+    }
+
+    long getFilerWriteNanos() {
+        return filerWriteNanos;
+    }
+
+    void addFilerWriteNanos(long nanos) {
+        filerWriteNanos += nanos;
+    }
+
+    /**
+     * @return the number of members that are copied from the template or from the sources
+     */
+    int getMembersCopied() {
+        return membersCopied;
+    }
+
+    void incMembersCopied() {
+        membersCopied++;
+    }
+
+    /**
+     * @return the number of template members with a {@link DtoIgnore} annotation
+     */
+    int getMembersIgnored() {
+        return membersIgnored;
+    }
+
+    void incMembersIgnored() {
+        membersIgnored++;
+    }
+
+    /**
+     * @return the number of source members that have been renamed with {@link DtoRename}
+     */
+    int getMembersRenamed() {
+        return membersRenamed;
+    }
+
+    void incMembersRenamed() {
+        membersRenamed++;
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.google.auto.common.MoreTypes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Regenerates the DTOs when the source roots of the {@link BatchGenerator} change (option {@code --watch}).
+ * <p>
+ * Only the affected templates are processed again: the templates that have been changed and the templates whose
+ * interfaces or superclasses (including their supertypes) have been changed. The dependencies of each template are
+ * recorded by a {@link GenerationListener}.
+ * </p>
+ * <p>
+ * The JVM (with the JIT-compiled processor) and the file manager (with the opened classpath archives) stay warm.
+ * But a javac task can only be called once and its symbol table is bound to the task, so each change uses a new
+ * task. This task only parses the affected templates: all other types are loaded on demand.
+ * </p>
+ * <p>
+ * When the {@link DtoIndex} is generated, every change processes all templates: the index must contain all DTOs.
+ * </p>
+ */
+class WatchGenerator implements Closeable, GenerationListener {
+
+    /**
+     * editors often write a file in several steps: the events of this period are processed together
+     */
+    private static final long DEBOUNCE_MILLIS = 50;
+
+    private final BatchGenerator batchGenerator;
+    private final PrintStream log;
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    private final StandardJavaFileManager fileManager;
+    /**
+     * key: a template file, value: the qualified names of the top-level types which contain its source types
+     */
+    private final Map<Path, Set<String>> sourceTypesByTemplateFile = new HashMap<>();
+    /**
+     * the template files that could not be generated: they are retried on every change
+     */
+    private final Set<Path> failedTemplateFiles = new HashSet<>();
+
+    WatchGenerator(BatchGenerator batchGenerator, PrintStream log) {
+        this.batchGenerator = batchGenerator;
+        this.log = log;
+        this.fileManager = BatchGenerator.createFileManager(compiler);
+    }
+
+    /**
+     * Generates all DTOs and then regenerates the affected DTOs on every change, until the thread is interrupted.
+     */
+    void watch() throws IOException, InterruptedException {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Map<WatchKey, Path> directoriesByWatchKey = new HashMap<>();
+            for (Path sourceRoot : batchGenerator.getSourceRoots()) {
+                register(watchService, sourceRoot, directoriesByWatchKey);
+            }
+            generateAll();
+            log.println("dto-gen: watching " + batchGenerator.getSourceRoots());
+            while (!directoriesByWatchKey.isEmpty()) {
+                Set<Path> changedFiles = takeChangedFiles(watchService, directoriesByWatchKey);
+                Set<Path> affectedTemplateFiles = getAffectedTemplateFiles(changedFiles);
+                if (affectedTemplateFiles.isEmpty()) {
+                    continue;
+                }
+                if (batchGenerator.isAggregating()) {
+                    generateAll();
+                } else {
+                    generate(affectedTemplateFiles);
+                }
+            }
+        }
+    }
+
+    void generateAll() throws IOException {
+        Set<Path> templateFiles = new HashSet<>();
+        for (Path sourceRoot : batchGenerator.getSourceRoots()) {
+            templateFiles.addAll(BatchGenerator.findTemplateFiles(sourceRoot));
+        }
+        generate(templateFiles);
+    }
+
+    /**
+     * @return true when all DTOs have been generated without errors
+     */
+    boolean generate(Set<Path> templateFiles) throws IOException {
+        long start = System.nanoTime();
+        // javac 8 does not create the output directory
+        Files.createDirectories(batchGenerator.getOutputDirectory());
+        for (Path templateFile : templateFiles) {
+            sourceTypesByTemplateFile.remove(templateFile);
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean success = batchGenerator.createTask(compiler, fileManager, diagnostics, templateFiles
+                , new DtoGenAnnotationProcessor(this)).call();
+        BatchGenerator.printDiagnostics(diagnostics, log);
+
+        failedTemplateFiles.removeAll(templateFiles);
+        for (Path templateFile : templateFiles) {
+            if (!sourceTypesByTemplateFile.containsKey(templateFile)) {
+                failedTemplateFiles.add(templateFile);
+            }
+        }
+        log.println("dto-gen: processed " + templateFiles.size() + " template files in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return success;
+    }
+
+    @Override
+    public void dtoGenerated(TypeElement template, List<TypeElement> sourceTypes) {
+        Path templateFile = findSourceFileOrNull(getTopLevelTypeName(template));
+        if (templateFile == null) {
+            return;
+        }
+        Set<String> sourceTypeNames = new HashSet<>();
+        for (TypeElement sourceType : sourceTypes) {
+            addTopLevelTypeNames(sourceType, sourceTypeNames);
+        }
+        sourceTypesByTemplateFile.put(templateFile, sourceTypeNames);
+    }
+
+    /**
+     * adds the type and all its supertypes: the inherited methods are also copied (see {@link SourceHierarchy})
+     */
+    private static void addTopLevelTypeNames(TypeElement type, Set<String> result) {
+        if (!result.add(getTopLevelTypeName(type))) {
+            return;
+        }
+        List<TypeMirror> supertypes = new ArrayList<>(type.getInterfaces());
+        supertypes.add(type.getSuperclass());
+        for (TypeMirror supertype : supertypes) {
+            if (supertype.getKind() == TypeKind.DECLARED) {
+                addTopLevelTypeNames(MoreTypes.asTypeElement(supertype), result);
+            }
+        }
+    }
+
+    /**
+     * @return the templates that must be processed again after the given files have been changed
+     */
+    Set<Path> getAffectedTemplateFiles(Set<Path> changedFiles) {
+        Set<Path> result = new HashSet<>(failedTemplateFiles);
+        Set<String> changedTypeNames = new HashSet<>();
+        for (Path changedFile : changedFiles) {
+            String typeName = getTypeNameOrNull(changedFile);
+            if (typeName == null) {
+                continue;
+            }
+            changedTypeNames.add(typeName);
+            if (isTemplateFile(changedFile)) {
+                result.add(changedFile);
+            } else {
+                sourceTypesByTemplateFile.remove(changedFile);
+                failedTemplateFiles.remove(changedFile);
+                result.remove(changedFile);
+            }
+        }
+        for (Map.Entry<Path, Set<String>> entry : sourceTypesByTemplateFile.entrySet()) {
+            if (!Collections.disjoint(entry.getValue(), changedTypeNames)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    private static boolean isTemplateFile(Path file) {
+        try {
+            return Files.isRegularFile(file) && BatchGenerator.isTemplateFile(file);
+        } catch (IOException e) {
+            // e.g. the file has been deleted in the meantime
+            return false;
+        }
+    }
+
+    /**
+     * @return the qualified name of the top-level type in the java file of a source root or null
+     */
+    private String getTypeNameOrNull(Path file) {
+        String fileName = file.getFileName().toString();
+        if (!fileName.endsWith(".java")) {
+            return null;
+        }
+        for (Path sourceRoot : batchGenerator.getSourceRoots()) {
+            if (file.startsWith(sourceRoot)) {
+                String relativePath = sourceRoot.relativize(file).toString();
+                return relativePath.substring(0, relativePath.length() - ".java".length())
+                        .replace(file.getFileSystem().getSeparator(), ".");
+            }
+        }
+        return null;
+    }
+
+    private Path findSourceFileOrNull(String topLevelTypeName) {
+        String relativePath = topLevelTypeName.replace('.', '/') + ".java";
+        for (Path sourceRoot : batchGenerator.getSourceRoots()) {
+            Path result = sourceRoot.resolve(relativePath);
+            if (Files.isRegularFile(result)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private static String getTopLevelTypeName(TypeElement typeElement) {
+        TypeElement result = typeElement;
+        Element enclosingElement = result.getEnclosingElement();
+        while (enclosingElement != null && enclosingElement.getKind() != ElementKind.PACKAGE) {
+            if (enclosingElement instanceof TypeElement) {
+                result = (TypeElement) enclosingElement;
+            }
+            enclosingElement = enclosingElement.getEnclosingElement();
+        }
+        return result.getQualifiedName().toString();
+    }
+
+    /**
+     * waits for the next changes
+     *
+     * @return the changed java files
+     */
+    private static Set<Path> takeChangedFiles(WatchService watchService, Map<WatchKey, Path> directoriesByWatchKey)
+            throws IOException, InterruptedException {
+        Set<Path> result = new HashSet<>();
+        WatchKey watchKey = watchService.take();
+        while (watchKey != null) {
+            Path directory = directoriesByWatchKey.get(watchKey);
+            for (WatchEvent<?> event : watchKey.pollEvents()) {
+                if (directory == null || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    continue;
+                }
+                Path changedPath = directory.resolve((Path) event.context());
+                if (Files.isDirectory(changedPath)) {
+                    // the WatchService is not recursive: the files of a new directory are reported as changes
+                    result.addAll(register(watchService, changedPath, directoriesByWatchKey));
+                } else {
+                    result.add(changedPath);
+                }
+            }
+            if (!watchKey.reset()) {
+                directoriesByWatchKey.remove(watchKey);
+            }
+            watchKey = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return result;
+    }
+
+    /**
+     * registers the directory and all its subdirectories
+     *
+     * @return the files in the directories
+     */
+    private static Set<Path> register(final WatchService watchService, Path directory
+            , final Map<WatchKey, Path> directoriesByWatchKey) throws IOException {
+        final Set<Path> result = new HashSet<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey watchKey = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE
+                        , StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                directoriesByWatchKey.put(watchKey, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                result.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileManager.close();
+    }
+}
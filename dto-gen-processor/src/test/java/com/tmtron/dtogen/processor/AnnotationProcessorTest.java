@@ -16,15 +16,25 @@
 package com.tmtron.dtogen.processor;
 
 import com.google.common.truth.Truth;
+import com.google.testing.compile.Compilation;
 import com.google.testing.compile.CompileTester;
+import com.google.testing.compile.Compiler;
 import com.google.testing.compile.JavaFileObjects;
 import com.google.testing.compile.JavaSourceSubjectFactory;
+import com.google.testing.compile.JavaSourcesSubjectFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
 
 /**
  * Base class for annotation processor tests.
@@ -58,14 +68,78 @@ class AnnotationProcessorTest {
         return JavaFileObjects.forResource(resourceUrl);
     }
 
-    public CompileTester assertGeneration(String templateFile, String expectedOutputFile) {
+    /**
+     * @param processorOptions e.g. "-Adtogen.reproducible=true"
+     */
+    public CompileTester assertGeneration(String templateFile, String expectedOutputFile
+            , String... processorOptions) {
         return Truth.assertAbout(JavaSourceSubjectFactory.javaSource())
                 .that(getJfoResource(templateFile))
-                // otherwise we get this warning:
-                // No processor claimed any of these annotations: com.tmtron.enums.annotation.EnumMappers
-                .withCompilerOptions("-Xlint:-processing")
+                .withCompilerOptions(getCompilerOptions(processorOptions))
+                .processedWith(new DtoGenAnnotationProcessor());
+
+    }
+
+    /**
+     * @param processorOptions e.g. "-Adtogen.reproducible=true"
+     */
+    public CompileTester assertGeneration(JavaFileObject template, String... processorOptions) {
+        return Truth.assertAbout(JavaSourceSubjectFactory.javaSource())
+                .that(template)
+                .withCompilerOptions(getCompilerOptions(processorOptions))
                 .processedWith(new DtoGenAnnotationProcessor());
+    }
 
+    /**
+     * @param simpleName    the simple name of the template, e.g. "Wide_"
+     * @param accessorCount the number of abstract int accessors: {@code f0()}, {@code f1()}, ..
+     * @return a public class template in the package {@code com.tmtron.dtogen.processor.test}
+     */
+    static JavaFileObject createWideTemplate(String simpleName, int accessorCount) {
+        StringBuilder source = new StringBuilder()
+                .append("package com.tmtron.dtogen.processor.test;\n\n")
+                .append("@com.tmtron.dtogen.processor.DtoConfig\n")
+                .append("public abstract class ").append(simpleName).append(" {\n");
+        for (int i = 0; i < accessorCount; i++) {
+            source.append("    public abstract int f").append(i).append("();\n");
+        }
+        source.append("}\n");
+        return JavaFileObjects.forSourceString("com.tmtron.dtogen.processor.test." + simpleName, source.toString());
+    }
+
+    List<String> getCompilerOptions(String... processorOptions) {
+        List<String> result = new ArrayList<>();
+        // otherwise we get this warning:
+        // No processor claimed any of these annotations: com.tmtron.enums.annotation.EnumMappers
+        result.add("-Xlint:-processing");
+        result.addAll(Arrays.asList(processorOptions));
+        return result;
+    }
+
+    /**
+     * Processes all given template files in one compilation
+     *
+     * @param templateFiles e.g. "FirstDto_.java"
+     */
+    public CompileTester assertGenerationOfAll(String... templateFiles) {
+        return assertGenerationOfAll(Arrays.asList(templateFiles));
+    }
+
+    /**
+     * Processes all given template files in one compilation
+     *
+     * @param templateFiles    e.g. "FirstDto_.java"
+     * @param processorOptions e.g. "-Adtogen.reproducible=true"
+     */
+    public CompileTester assertGenerationOfAll(List<String> templateFiles, String... processorOptions) {
+        List<JavaFileObject> templates = new ArrayList<>();
+        for (String templateFile : templateFiles) {
+            templates.add(getJfoResource(templateFile));
+        }
+        return Truth.assertAbout(JavaSourcesSubjectFactory.javaSources())
+                .that(templates)
+                .withCompilerOptions(getCompilerOptions(processorOptions))
+                .processedWith(new DtoGenAnnotationProcessor());
     }
 
     /**
@@ -76,16 +150,82 @@ class AnnotationProcessorTest {
      * </ul>
      *
      * @param fileName
+     * @param processorOptions e.g. "-Adtogen.reproducible=true"
      */
-    public void assertGenerationWithoutWarnings(String fileName) {
+    public void assertGenerationWithoutWarnings(String fileName, String... processorOptions) {
         final String templateFile = fileName + "_.java";
         final String expectedOutputFile = fileName + ".java";
         
-        assertGeneration(templateFile, expectedOutputFile)
+        assertGeneration(templateFile, expectedOutputFile, processorOptions)
                 .compilesWithoutWarnings()
                 .and()
                 .generatesSources(getJfoResource(expectedOutputFile));
     }
 
+    /**
+     * Processes the template file and returns the text of a generated source file, e.g. to test the formatting
+     * (the {@link CompileTester} only compares the syntax trees)
+     *
+     * @param className        the qualified name of a generated class
+     * @param processorOptions e.g. "-Adtogen.reproducible=true"
+     */
+    String getGeneratedSource(String templateFile, String className, String... processorOptions) throws IOException {
+        return getGeneratedSource(getJfoResource(templateFile), className, processorOptions);
+    }
+
+    String getGeneratedSource(JavaFileObject template, String className, String... processorOptions)
+            throws IOException {
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new DtoGenAnnotationProcessor())
+                .withOptions(getCompilerOptions(processorOptions))
+                .compile(template);
+        Truth.assertThat(compilation.status()).isEqualTo(Compilation.Status.SUCCESS);
+        return compilation.generatedSourceFile(className).get().getCharContent(true).toString();
+    }
+
+    /**
+     * Processes and compiles the template file and loads a class from the class output of the compilation, e.g. to
+     * test the behaviour of the generated code
+     *
+     * @param className        the qualified name of a generated class
+     * @param processorOptions e.g. "-Adtogen.reproducible=true"
+     */
+    Class<?> compileAndLoad(String templateFile, String className, String... processorOptions) throws Exception {
+        final Compilation compilation = Compiler.javac()
+                .withProcessors(new DtoGenAnnotationProcessor())
+                .withOptions(getCompilerOptions(processorOptions))
+                .compile(getJfoResource(templateFile));
+        Truth.assertThat(compilation.status()).isEqualTo(Compilation.Status.SUCCESS);
+        ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                String classFileName = name.replace('.', '/') + ".class";
+                if (!compilation.generatedFile(StandardLocation.CLASS_OUTPUT, classFileName).isPresent()) {
+                    throw new ClassNotFoundException(name);
+                }
+                try {
+                    byte[] classBytes = readAll(compilation.generatedFile(StandardLocation.CLASS_OUTPUT
+                            , classFileName).get());
+                    return defineClass(name, classBytes, 0, classBytes.length);
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        };
+        return classLoader.loadClass(className);
+    }
+
+    static byte[] readAll(JavaFileObject file) throws IOException {
+        try (InputStream inputStream = file.openInputStream()) {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = inputStream.read(buffer)) > 0) {
+                result.write(buffer, 0, length);
+            }
+            return result.toByteArray();
+        }
+    }
+
 }
 
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class BatchGeneratorTest {
+
+    private static final String PACKAGE_PATH = "com/tmtron/dtogen/batch";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream logBytes = new ByteArrayOutputStream();
+    private final PrintStream log = new PrintStream(logBytes, true);
+
+    private Path createSourceRoot(String name, String... resourceFileNames) throws IOException {
+        Path sourceRoot = temporaryFolder.newFolder(name).toPath();
+        Path packageDirectory = Files.createDirectories(sourceRoot.resolve(PACKAGE_PATH));
+        for (String resourceFileName : resourceFileNames) {
+            String resourceName = BatchGeneratorTest.class.getSimpleName() + "/" + resourceFileName;
+            try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resourceName)) {
+                Files.copy(inputStream, packageDirectory.resolve(resourceFileName));
+            }
+        }
+        return sourceRoot;
+    }
+
+    @Test
+    public void generatesTheDtosOfAllSourceRoots() throws IOException {
+        // the template and its interface are in different source roots
+        Path templateRoot = createSourceRoot("templates", "AddressDto_.java");
+        Path sourceRoot = createSourceRoot("sources", "Address.java");
+        Path outputDirectory = temporaryFolder.getRoot().toPath().resolve("out");
+
+        int exitCode = BatchGenerator.run(new String[]{"--out", outputDirectory.toString(), "--threads", "2"
+                , "-A" + ProcessorOptions.REPRODUCIBLE, templateRoot.toString(), sourceRoot.toString()}, log);
+
+        assertThat(exitCode).named(logBytes.toString()).isEqualTo(0);
+        Path generatedFile = outputDirectory.resolve(PACKAGE_PATH).resolve("AddressDto.java");
+        String generatedSource = new String(Files.readAllBytes(generatedFile), StandardCharsets.UTF_8);
+        assertThat(generatedSource).contains("public abstract class AddressDto");
+        assertThat(generatedSource).contains("String street()");
+        assertThat(generatedSource).contains("int zipCode()");
+        // only the DTO is generated: no class files and nothing for the superclass
+        try (Stream<Path> files = Files.walk(outputDirectory)) {
+            assertThat(files.filter(Files::isRegularFile).count()).isEqualTo(1L);
+        }
+    }
+
+    @Test
+    public void theIndexContainsTheDtosOfAllSourceRoots() throws IOException {
+        Path templateRoot = createSourceRoot("templates", "AddressDto_.java");
+        Path sourceRoot = createSourceRoot("sources", "Address.java");
+        Path otherTemplateRoot = createSourceRoot("others", "PersonDto_.java");
+        Path outputDirectory = temporaryFolder.getRoot().toPath().resolve("out");
+
+        int exitCode = BatchGenerator.run(new String[]{"--out", outputDirectory.toString(), "--threads", "3"
+                , "-A" + ProcessorOptions.REGISTRY + "=com.tmtron.dtogen.batch.DtoRegistry", templateRoot.toString()
+                , sourceRoot.toString(), otherTemplateRoot.toString()}, log);
+
+        assertThat(exitCode).named(logBytes.toString()).isEqualTo(0);
+        String index = new String(Files.readAllBytes(outputDirectory.resolve(DtoIndex.INDEX_RESOURCE))
+                , StandardCharsets.UTF_8);
+        assertThat(index).contains("com.tmtron.dtogen.batch.AddressDto\t");
+        assertThat(index).contains("com.tmtron.dtogen.batch.PersonDto\t");
+        String registry = new String(Files.readAllBytes(outputDirectory.resolve(PACKAGE_PATH)
+                .resolve("DtoRegistry.java")), StandardCharsets.UTF_8);
+        assertThat(registry).contains("\"com.tmtron.dtogen.batch.AddressDto\"");
+        assertThat(registry).contains("\"com.tmtron.dtogen.batch.PersonDto\"");
+    }
+
+    @Test
+    public void theRegistryOptionWithoutValueIsNotAggregating() {
+        // the processor does not generate a registry for an option without value
+        assertThat(BatchGenerator.fromArguments(new String[]{"--out", "out", "-A" + ProcessorOptions.REGISTRY
+                , "src/main/java"}).isAggregating()).isFalse();
+        assertThat(BatchGenerator.fromArguments(new String[]{"--out", "out", "-A" + ProcessorOptions.REGISTRY + "="
+                , "src/main/java"}).isAggregating()).isFalse();
+        assertThat(BatchGenerator.fromArguments(new String[]{"--out", "out", "-A" + ProcessorOptions.REGISTRY
+                + "=com.test.DtoRegistry", "src/main/java"}).isAggregating()).isTrue();
+        assertThat(BatchGenerator.fromArguments(new String[]{"--out", "out", "src/main/java"}).isAggregating())
+                .isFalse();
+    }
+
+    @Test
+    public void watchModeOnlyRegeneratesTheAffectedTemplates() throws IOException {
+        Path templateRoot = createSourceRoot("templates", "AddressDto_.java");
+        Path sourceRoot = createSourceRoot("sources", "Address.java");
+        Path outputDirectory = temporaryFolder.getRoot().toPath().resolve("out");
+        BatchGenerator batchGenerator = BatchGenerator.fromArguments(new String[]{"--out", outputDirectory.toString()
+                , "--watch", templateRoot.toString(), sourceRoot.toString()});
+        Path templateFile = templateRoot.resolve(PACKAGE_PATH).resolve("AddressDto_.java");
+        Path interfaceFile = sourceRoot.resolve(PACKAGE_PATH).resolve("Address.java");
+        Path generatedFile = outputDirectory.resolve(PACKAGE_PATH).resolve("AddressDto.java");
+
+        try (WatchGenerator watchGenerator = new WatchGenerator(batchGenerator, log)) {
+            watchGenerator.generateAll();
+            assertThat(new String(Files.readAllBytes(generatedFile), StandardCharsets.UTF_8)).doesNotContain("city()");
+
+            // a change of the interface affects the template
+            String interfaceSource = new String(Files.readAllBytes(interfaceFile), StandardCharsets.UTF_8);
+            Files.write(interfaceFile, interfaceSource.replace("int zipCode();", "int zipCode();\n\n    String city();")
+                    .getBytes(StandardCharsets.UTF_8));
+            Set<Path> affectedTemplateFiles = watchGenerator.getAffectedTemplateFiles(
+                    Collections.singleton(interfaceFile));
+            assertThat(affectedTemplateFiles).containsExactly(templateFile);
+
+            assertThat(watchGenerator.generate(affectedTemplateFiles)).named(logBytes.toString()).isTrue();
+            assertThat(new String(Files.readAllBytes(generatedFile), StandardCharsets.UTF_8)).contains("city()");
+
+            // an unrelated file does not affect the template
+            Path otherFile = Files.write(sourceRoot.resolve(PACKAGE_PATH).resolve("Other.java")
+                    , "package com.tmtron.dtogen.batch; class Other {}".getBytes(StandardCharsets.UTF_8));
+            assertThat(watchGenerator.getAffectedTemplateFiles(Collections.singleton(otherFile))).isEmpty();
+        }
+    }
+
+    @Test
+    public void missingOutputDirectoryIsAUsageError() {
+        int exitCode = BatchGenerator.run(new String[]{"src/main/java"}, log);
+
+        assertThat(exitCode).isEqualTo(2);
+        assertThat(logBytes.toString()).contains("--out");
+    }
+
+    @Test
+    public void onlyFilesThatMentionDtoConfigAreCompiled() throws IOException {
+        Path sourceRoot = createSourceRoot("sources", "Address.java", "AddressDto_.java");
+
+        assertThat(BatchGenerator.isTemplateFile(sourceRoot.resolve(PACKAGE_PATH).resolve("AddressDto_.java")))
+                .isTrue();
+        assertThat(BatchGenerator.isTemplateFile(sourceRoot.resolve(PACKAGE_PATH).resolve("Address.java")))
+                .isFalse();
+    }
+}
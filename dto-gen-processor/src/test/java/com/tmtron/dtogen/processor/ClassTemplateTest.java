@@ -15,8 +15,14 @@
  */
 package com.tmtron.dtogen.processor;
 
+import com.google.testing.compile.JavaFileObjects;
+
 import org.junit.Test;
 
+import java.io.IOException;
+
+import static com.google.common.truth.Truth.assertThat;
+
 public class ClassTemplateTest extends AnnotationProcessorTest {
 
     @Test
@@ -59,6 +65,41 @@ public class ClassTemplateTest extends AnnotationProcessorTest {
         assertGenerationWithoutWarnings("TemplateCopyFieldWithInitializer");
     }
 
+    @Test
+    public void testTemplateCopyOriginalCode() {
+        assertGenerationWithoutWarnings("TemplateCopyOriginalCode");
+    }
+
+    @Test
+    public void copiedMethodBodiesAreIndentedOnce() throws IOException {
+        // the relative indentation of the original code is kept
+        String generatedSource = getGeneratedSource("TemplateCopyOriginalCode_.java"
+                , "com.tmtron.dtogen.processor.test.TemplateCopyOriginalCode");
+        assertThat(generatedSource).contains("\n"
+                + "  public String templateMemberMethod() {\n"
+                + "    // comments and $ characters must be kept\n"
+                + "    String result = \"$price\";\n"
+                + "    {\n"
+                + "        result += values.length;\n"
+                + "    }\n"
+                + "    return result;\n"
+                + "  }\n");
+    }
+
+    @Test
+    public void windowsLineBreaksOfCopiedMethodBodiesAreNormalized() throws IOException {
+        String template = getJfoResource("TemplateCopyOriginalCode_.java").getCharContent(true).toString()
+                .replace("\n", "\r\n");
+        String generatedSource = getGeneratedSource(
+                JavaFileObjects.forSourceString("com.tmtron.dtogen.processor.test.TemplateCopyOriginalCode_", template)
+                , "com.tmtron.dtogen.processor.test.TemplateCopyOriginalCode");
+        assertThat(generatedSource).doesNotContain("\r");
+        assertThat(generatedSource).contains("\n"
+                + "    {\n"
+                + "        result += values.length;\n"
+                + "    }\n");
+    }
+
     @Test
     public void testRenameMethod() {
         assertGenerationWithoutWarnings("RenameMethod");
@@ -29,4 +29,9 @@ public class DtoIgnoreTest extends AnnotationProcessorTest {
         assertGenerationWithoutWarnings("UserIgnoreField");
     }
 
+    @Test
+    public void overloadedMethodWithDtoIgnore() {
+        assertGenerationWithoutWarnings("IgnoreOverloadedMethod");
+    }
+
 }
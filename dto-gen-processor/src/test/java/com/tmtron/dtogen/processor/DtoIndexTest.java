@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class DtoIndexTest extends AnnotationProcessorTest {
+
+    private static final String REGISTRY_OPTION = "-A" + ProcessorOptions.REGISTRY + "=com.test.DtoRegistry";
+    private static final String REPRODUCIBLE_OPTION = "-A" + ProcessorOptions.REPRODUCIBLE;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void indexAndRegistryContainAllDtos() {
+        assertGenerationOfAll(Arrays.asList("FirstDto_.java", "SecondDto_.java"), REGISTRY_OPTION
+                , REPRODUCIBLE_OPTION)
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("DtoRegistry.java"))
+                .and()
+                .generatesFileNamed(StandardLocation.CLASS_OUTPUT, "", DtoIndex.INDEX_RESOURCE)
+                .withStringContents(StandardCharsets.UTF_8
+                        , "com.tmtron.dtogen.processor.test.FirstDto\t"
+                                + "com.tmtron.dtogen.processor.test.FirstDto_\t"
+                                + "com.tmtron.dtogen.processor.test.SimpleClass\n"
+                                + "com.tmtron.dtogen.processor.test.SecondDto\t"
+                                + "com.tmtron.dtogen.processor.test.SecondDto_\t"
+                                + "com.tmtron.dtogen.processor.test.User\n");
+    }
+
+    /**
+     * Gradle passes the unchanged templates of an aggregating processor as class files to the next compilation: the
+     * index must still contain their DTOs, but they must not be generated again (e.g. the method bodies are missing)
+     */
+    @Test
+    public void indexContainsTheUnchangedTemplatesOfAnIncrementalBuild() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        File classesDirectory = temporaryFolder.newFolder("classes");
+        File generatedDirectory = temporaryFolder.newFolder("generated");
+        String classPath = classesDirectory + File.pathSeparator + System.getProperty("java.class.path");
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null
+                , StandardCharsets.UTF_8)) {
+            // the full build
+            JavaCompiler.CompilationTask fullBuild = compiler.getTask(null, fileManager, null, Arrays.asList(
+                    "-Xlint:-processing", REGISTRY_OPTION, "-classpath", classPath
+                    , "-d", classesDirectory.toString(), "-s", generatedDirectory.toString()), null
+                    , Arrays.asList(getJfoResource("FirstDto_.java"), getJfoResource("RenamedDto_.java")));
+            fullBuild.setProcessors(Collections.singletonList(new DtoGenAnnotationProcessor()));
+            assertThat(fullBuild.call()).isTrue();
+            // Gradle removes the generated files of the changed templates and of the aggregating processor
+            Files.delete(generatedDirectory.toPath().resolve("com/test/DtoRegistry.java"));
+
+            // the incremental build: only the changed template is compiled
+            JavaCompiler.CompilationTask incrementalBuild = compiler.getTask(null, fileManager, null
+                    , Arrays.asList("-Xlint:-processing", REGISTRY_OPTION, "-classpath", classPath
+                            , "-d", classesDirectory.toString(), "-s", generatedDirectory.toString())
+                    , Arrays.asList("com.tmtron.dtogen.processor.test.FirstDto_"
+                            , "com.tmtron.dtogen.processor.test.RenamedDto_")
+                    , Collections.singletonList(getJfoResource("SecondDto_.java")));
+            incrementalBuild.setProcessors(Collections.singletonList(new DtoGenAnnotationProcessor()));
+            assertThat(incrementalBuild.call()).isTrue();
+        }
+
+        String index = new String(Files.readAllBytes(classesDirectory.toPath().resolve(DtoIndex.INDEX_RESOURCE))
+                , StandardCharsets.UTF_8);
+        assertThat(index).contains("com.tmtron.dtogen.processor.test.FirstDto\t");
+        assertThat(index).contains("com.tmtron.dtogen.processor.test.RenamedDto\t");
+        assertThat(index).contains("com.tmtron.dtogen.processor.test.SecondDto\t");
+        // the DTO of the unchanged template is the one of the full build
+        String renamedDto = new String(Files.readAllBytes(generatedDirectory.toPath().resolve(
+                "com/tmtron/dtogen/processor/test/RenamedDto.java")), StandardCharsets.UTF_8);
+        assertThat(renamedDto).contains("return \"dto\";");
+    }
+
+}
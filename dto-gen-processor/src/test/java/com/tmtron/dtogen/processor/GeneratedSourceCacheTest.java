@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.lang.model.SourceVersion;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class GeneratedSourceCacheTest extends AnnotationProcessorTest {
+
+    @Rule
+    public TemporaryFolder cacheFolder = new TemporaryFolder();
+
+    private String getCacheDirOption() {
+        return "-A" + ProcessorOptions.CACHE_DIR + "=" + cacheFolder.getRoot().getAbsolutePath();
+    }
+
+    private Path getCacheFile() {
+        return cacheFolder.getRoot().toPath().resolve("com.tmtron.dtogen.processor.test.SimpleCopy.java.cache");
+    }
+
+    /**
+     * @return e.g. "8" for {@link SourceVersion#RELEASE_8}
+     */
+    private static String getSourceOption(SourceVersion sourceVersion) {
+        return sourceVersion.name().substring("RELEASE_".length());
+    }
+
+    @Test
+    public void generatedSourceIsStoredInTheCache() {
+        assertGenerationWithoutWarnings("SimpleCopy", getCacheDirOption());
+        assertThat(Files.exists(getCacheFile())).isTrue();
+    }
+
+    @Test
+    public void cachedSourceIsUsedWhenTheFingerprintIsUnchanged() throws IOException {
+        assertGenerationWithoutWarnings("SimpleCopy", getCacheDirOption());
+
+        // modify the cached source code: the next compilation must use it instead of processing the template
+        String cachedContent = new String(Files.readAllBytes(getCacheFile()), StandardCharsets.UTF_8);
+        Files.write(getCacheFile(), cachedContent.replace("id()", "idFromCache()").getBytes(StandardCharsets.UTF_8));
+
+        assertGeneration("SimpleCopy_.java", "SimpleCopyFromCache.java", getCacheDirOption())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("SimpleCopyFromCache.java"));
+    }
+
+    @Test
+    public void cacheIsNotUsedWhenTheFingerprintChanges() throws IOException {
+        assertGenerationWithoutWarnings("SimpleCopy", getCacheDirOption());
+
+        // simulate a cache entry for another version of the template
+        String cachedContent = new String(Files.readAllBytes(getCacheFile()), StandardCharsets.UTF_8);
+        String otherFingerprint = cachedContent.replaceFirst("dtogen-fingerprint: \\w+", "dtogen-fingerprint: 0");
+        Files.write(getCacheFile(), otherFingerprint.replace("id()", "idFromCache()")
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertGenerationWithoutWarnings("SimpleCopy", getCacheDirOption());
+    }
+
+    @Test
+    public void cacheIsNotUsedWhenTheSourceVersionChanges() throws IOException {
+        // both source versions are explicit: the default source version depends on the JDK
+        SourceVersion latest = SourceVersion.latest();
+        SourceVersion previous = SourceVersion.values()[latest.ordinal() - 1];
+        assertGenerationWithoutWarnings("SimpleCopy", getCacheDirOption(), "-source", getSourceOption(latest));
+
+        String cachedContent = new String(Files.readAllBytes(getCacheFile()), StandardCharsets.UTF_8);
+        Files.write(getCacheFile(), cachedContent.replace("id()", "idFromCache()").getBytes(StandardCharsets.UTF_8));
+
+        // e.g. records are only generated for newer source versions
+        assertGeneration("SimpleCopy_.java", "SimpleCopy.java", getCacheDirOption(), "-source"
+                , getSourceOption(previous))
+                .compilesWithoutError()
+                .and()
+                .generatesSources(getJfoResource("SimpleCopy.java"));
+    }
+
+    @Test
+    public void templateIsNotReportedAsCachedWhenACompanionIsMissing() throws IOException {
+        String mappersOption = "-A" + ProcessorOptions.MAPPERS;
+        String statsOption = "-A" + ProcessorOptions.STATS + "=" + cacheFolder.newFile("stats.json");
+        assertGeneration("SimpleCopy_.java", "SimpleCopy.java", getCacheDirOption(), mappersOption, statsOption)
+                .compilesWithoutWarnings()
+                .withNoteContaining("1 templates (0 from cache)");
+        assertGeneration("SimpleCopy_.java", "SimpleCopy.java", getCacheDirOption(), mappersOption, statsOption)
+                .compilesWithoutWarnings()
+                .withNoteContaining("1 templates (1 from cache)");
+
+        Files.delete(cacheFolder.getRoot().toPath().resolve(
+                "com.tmtron.dtogen.processor.test.SimpleCopyMapper.java.cache"));
+        assertGeneration("SimpleCopy_.java", "SimpleCopy.java", getCacheDirOption(), mappersOption, statsOption)
+                .compilesWithoutWarnings()
+                .withNoteContaining("1 templates (0 from cache)");
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+
+import javax.lang.model.element.Modifier;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * The immutable DTOs are final classes, see {@link ImmutableLayout}
+ */
+public class ImmutableTargetTest extends AnnotationProcessorTest {
+
+    private static final String IMMUTABLE_OPTION = "-A" + ProcessorOptions.TARGET + "=immutable";
+    private static final String REPRODUCIBLE_OPTION = "-A" + ProcessorOptions.REPRODUCIBLE;
+
+    @Test
+    public void classTemplateGeneratesFinalClass() {
+        assertGeneration("CustomerImmutable_.java", "CustomerImmutable.java", IMMUTABLE_OPTION, REPRODUCIBLE_OPTION)
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("CustomerImmutable.java"));
+    }
+
+    @Test
+    public void declaredEqualsAndHashCodeAreNotGenerated() {
+        assertGeneration("CustomerKey_.java", "CustomerKey.java", IMMUTABLE_OPTION, REPRODUCIBLE_OPTION)
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("CustomerKey.java"));
+    }
+
+    @Test
+    public void accessorsWithTheNamesOfLocalVariablesAreCompared() throws Exception {
+        Class<?> dtoClass = compileAndLoad("LocalNames_.java", "com.tmtron.dtogen.processor.test.LocalNames"
+                , IMMUTABLE_OPTION);
+        Constructor<?> constructor = dtoClass.getConstructor(int.class, String.class, long.class);
+        Object dto = constructor.newInstance(1, "x", 2L);
+
+        assertThat(dto).isEqualTo(constructor.newInstance(1, "x", 2L));
+        assertThat(dto.hashCode()).isEqualTo(constructor.newInstance(1, "x", 2L).hashCode());
+        assertThat(dto).isNotEqualTo(constructor.newInstance(1, "y", 2L));
+        assertThat(dto).isNotEqualTo(constructor.newInstance(1, "x", 3L));
+        assertThat(dto.hashCode()).isNotEqualTo(constructor.newInstance(2, "x", 2L).hashCode());
+    }
+
+    @Test
+    public void mapperUsesTheConstructor() {
+        assertGeneration("CustomerValue_.java", "CustomerValueMapper.java", IMMUTABLE_OPTION
+                , "-A" + ProcessorOptions.MAPPERS)
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("CustomerValueMapper.java"));
+    }
+
+    @Test
+    public void mutableInstanceFieldsGenerateAbstractClass() {
+        assertGeneration("InstanceField_.java", "InstanceField.java", IMMUTABLE_OPTION)
+                .compilesWithoutError()
+                .withWarningContaining("it does not support these members: [field counter]");
+    }
+
+    @Test
+    public void constructorIsLimitedToTheParameterSlots() {
+        ImmutableLayout immutableLayout = new ImmutableLayout();
+        // this + 127 longs = 255 slots
+        for (int i = 0; i < 127; i++) {
+            immutableLayout.addMethod(MethodSpec.methodBuilder("value" + i)
+                    .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                    .returns(TypeName.LONG)
+                    .build());
+        }
+        assertThat(immutableLayout.getUnsupportedMembers()).isEmpty();
+
+        immutableLayout.addMethod(MethodSpec.methodBuilder("flag")
+                .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                .returns(TypeName.BOOLEAN)
+                .build());
+        assertThat(immutableLayout.getUnsupportedMembers())
+                .containsExactly("constructor (the accessors need 256 of max. 255 parameter slots)");
+    }
+
+    @Test
+    public void immutablesTemplatesGenerateAbstractClass() {
+        assertGeneration("ImmutablesValue_.java", "ImmutablesValue.java", IMMUTABLE_OPTION)
+                .compilesWithoutWarnings()
+                .withNoteContaining("Immutables implements the template: an abstract class is generated");
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.google.common.io.Resources;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class IncrementalProcessingTest {
+
+    @Test
+    public void processorIsRegisteredAsDynamic() throws IOException {
+        String descriptor = Resources.toString(
+                Resources.getResource("META-INF/gradle/incremental.annotation.processors")
+                , StandardCharsets.UTF_8);
+        assertThat(descriptor.trim())
+                .isEqualTo(DtoGenAnnotationProcessor.class.getCanonicalName() + ",dynamic");
+    }
+
+    @Test
+    public void processorIsIsolatingByDefault() {
+        assertThat(DtoGenAnnotationProcessor.getSupportedOptions(Collections.<String, String>emptyMap()))
+                .contains(DtoGenAnnotationProcessor.GRADLE_ISOLATING);
+    }
+
+    @Test
+    public void processorIsAggregatingWhenTheRegistryIsGenerated() {
+        Set<String> supportedOptions = DtoGenAnnotationProcessor.getSupportedOptions(
+                Collections.singletonMap(ProcessorOptions.REGISTRY, "com.test.DtoRegistry"));
+        assertThat(supportedOptions).contains(DtoGenAnnotationProcessor.GRADLE_AGGREGATING);
+        assertThat(supportedOptions).doesNotContain(DtoGenAnnotationProcessor.GRADLE_ISOLATING);
+    }
+
+}
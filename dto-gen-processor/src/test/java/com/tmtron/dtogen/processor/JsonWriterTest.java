@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class JsonWriterTest extends AnnotationProcessorTest {
+
+    private static final String JSON_WRITERS_OPTION = "-A" + ProcessorOptions.JSON_WRITERS;
+
+    @Test
+    public void allValueKindsAreWritten() {
+        assertGeneration("Order_.java", "OrderJsonWriter.java", JSON_WRITERS_OPTION)
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("OrderJsonWriter.java"));
+    }
+
+    @Test
+    public void theAppendableAndTheByteBufferWriteTheSameJson() throws Exception {
+        // the immutable target has a constructor: so that we can create the DTO
+        Class<?> writerClass = compileAndLoad("Order_.java", "com.tmtron.dtogen.processor.test.OrderJsonWriter"
+                , JSON_WRITERS_OPTION, "-A" + ProcessorOptions.TARGET + "=immutable");
+        Class<?> orderClass = writerClass.getClassLoader().loadClass("com.tmtron.dtogen.processor.test.Order");
+        Constructor<?> constructor = orderClass.getConstructor(String.class, int.class, long.class, double.class
+                , boolean.class, char.class, Integer.class, TimeUnit.class, LocalDate.class);
+        Object order = constructor.newInstance("a\"b\\c\n\u00e4\u20ac\ud83d\ude00", 3, Long.MIN_VALUE, 1.5, true
+                , '\t', null, TimeUnit.SECONDS, LocalDate.of(2017, 6, 1));
+
+        // control characters are escaped as unicode escapes
+        String expected = "{\"id\":\"a\\\"b\\\\c\\u000a\u00e4\u20ac\ud83d\ude00\",\"quantity\":3"
+                + ",\"total\":-9223372036854775808,\"price\":1.5,\"paid\":true,\"grade\":\"\\u0009\",\"priority\":null"
+                + ",\"unit\":\"SECONDS\",\"date\":\"2017-06-01\"}";
+        String expectedWithoutNulls = expected.replace(",\"priority\":null", "");
+
+        assertThat(writeToAppendable(writerClass, orderClass, order, false)).isEqualTo(expected);
+        assertThat(writeToAppendable(writerClass, orderClass, order, true)).isEqualTo(expectedWithoutNulls);
+        assertThat(writeToByteBuffer(writerClass, orderClass, order, false)).isEqualTo(expected);
+        assertThat(writeToByteBuffer(writerClass, orderClass, order, true)).isEqualTo(expectedWithoutNulls);
+    }
+
+    @Test
+    public void methodsOfAWideWriterAreJitCompilable() throws IOException {
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new DtoGenAnnotationProcessor())
+                .withOptions("-Xlint:-processing", JSON_WRITERS_OPTION)
+                .compile(createWideTemplate("Wide_", 2000));
+        assertThat(compilation.status()).isEqualTo(Compilation.Status.SUCCESS);
+
+        JavaFileObject writerClass = compilation.generatedFile(StandardLocation.CLASS_OUTPUT
+                , "com/tmtron/dtogen/processor/test/WideJsonWriter.class").get();
+        // e.g. the static initializer which fills the names
+        for (Map.Entry<String, Integer> codeLength : MethodSplitterTest.getCodeLengths(readAll(writerClass))
+                .entrySet()) {
+            assertThat(codeLength.getValue()).named(codeLength.getKey()).isAtMost(MethodSplitter.HUGE_METHOD_LIMIT);
+        }
+    }
+
+    @Test
+    public void arraysAndIterablesAreWrittenAsJsonArrays() throws Exception {
+        Class<?> writerClass = compileAndLoad("Basket_.java", "com.tmtron.dtogen.processor.test.BasketJsonWriter"
+                , JSON_WRITERS_OPTION, "-A" + ProcessorOptions.TARGET + "=immutable");
+        Class<?> basketClass = writerClass.getClassLoader().loadClass("com.tmtron.dtogen.processor.test.Basket");
+        Constructor<?> constructor = basketClass.getConstructor(int[].class, List.class, Set.class, List.class);
+        Object basket = constructor.newInstance(new int[]{1, -2}, Arrays.asList("a", null)
+                , EnumSet.of(TimeUnit.SECONDS), Collections.singletonList(new double[]{1.5, Double.NaN}));
+
+        String expected = "{\"counts\":[1,-2],\"tags\":[\"a\",null],\"units\":[\"SECONDS\"],\"rows\":[[1.5,null]]}";
+        assertThat(writeToAppendable(writerClass, basketClass, basket, false)).isEqualTo(expected);
+        assertThat(writeToByteBuffer(writerClass, basketClass, basket, false)).isEqualTo(expected);
+    }
+
+    @Test
+    public void unsupportedAccessorsAreReported() {
+        assertGeneration("Catalog_.java", "Catalog.java", JSON_WRITERS_OPTION)
+                .compilesWithoutError()
+                .withWarningContaining("Cannot generate the JSON writer of com.tmtron.dtogen.processor.test.Catalog, "
+                        + "because these accessors cannot be written as JSON: "
+                        + "[prices (java.util.Map<java.lang.String, java.lang.Integer>), "
+                        + "items (java.util.List<java.lang.Object>)]");
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new DtoGenAnnotationProcessor())
+                .withOptions(getCompilerOptions(JSON_WRITERS_OPTION))
+                .compile(getJfoResource("Catalog_.java"));
+        assertThat(compilation.generatedSourceFile("com.tmtron.dtogen.processor.test.CatalogJsonWriter").isPresent())
+                .isFalse();
+    }
+
+    private static String writeToAppendable(Class<?> writerClass, Class<?> dtoClass, Object dto
+            , boolean omitNulls) throws Exception {
+        Method writeJson = writerClass.getMethod("writeJson", dtoClass, Appendable.class, boolean.class);
+        StringBuilder out = new StringBuilder();
+        writeJson.invoke(null, dto, out, omitNulls);
+        return out.toString();
+    }
+
+    private static String writeToByteBuffer(Class<?> writerClass, Class<?> dtoClass, Object dto
+            , boolean omitNulls) throws Exception {
+        Method writeJson = writerClass.getMethod("writeJson", dtoClass, ByteBuffer.class, boolean.class);
+        ByteBuffer out = ByteBuffer.allocate(1024);
+        writeJson.invoke(null, dto, out, omitNulls);
+        out.flip();
+        return StandardCharsets.UTF_8.decode(out).toString();
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.tmtron.dtogen.processor.test.SimpleClass;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.lang.model.SourceVersion;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class MapperTest extends AnnotationProcessorTest {
+
+    private static final String MAPPERS_OPTION = "-A" + ProcessorOptions.MAPPERS;
+    private static final String BULK_MAPPERS_OPTION = "-A" + ProcessorOptions.BULK_MAPPERS;
+
+    @Test
+    public void renamedAccessorsAreMapped() {
+        assertGeneration("RenameMethod_.java", "RenameMethodMapper.java", MAPPERS_OPTION)
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("RenameMethodMapper.java"));
+    }
+
+    @Test
+    public void ignoredAccessorsAreNotMappedAndAllSourceTypesAreBounds() {
+        assertGeneration("CustomerDto_.java", "CustomerDtoMapper.java", MAPPERS_OPTION)
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("CustomerDtoMapper.java"));
+    }
+
+    @Test
+    public void immutablesTemplatesUseTheBuilder() {
+        assertGenerationOfAll(Arrays.asList("UserDto_.java", "ImmutableUserDto.java"), MAPPERS_OPTION)
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("UserDtoMapper.java"));
+    }
+
+    @Test
+    public void recordsUseTheCanonicalConstructor() {
+        // RELEASE_16: the constant does not exist in older JDKs
+        Assume.assumeTrue(SourceVersion.latestSupported().ordinal() >= 16);
+        assertGeneration("CustomerRecord_.java", "CustomerRecordMapper.java", MAPPERS_OPTION
+                , "-A" + ProcessorOptions.TARGET + "=record")
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("CustomerRecordMapper.java"));
+    }
+
+    @Test
+    public void bulkMethodsUseTheParallelThreshold() {
+        assertGeneration("RenameMethod_.java", "RenameMethodMapper.java", MAPPERS_OPTION, BULK_MAPPERS_OPTION
+                , "-A" + ProcessorOptions.PARALLEL_MAPPER_THRESHOLD + "=1000")
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("RenameMethodBulkMapper.java"));
+    }
+
+    @Test
+    public void bulkMethodsKeepTheOrderOfTheSources() throws Exception {
+        Class<?> mapper = compileAndLoad("RenameMethod_.java", "com.tmtron.dtogen.processor.test.RenameMethodMapper"
+                , MAPPERS_OPTION, BULK_MAPPERS_OPTION);
+        List<SimpleClass> sources = new LinkedList<>();
+        for (int i = 0; i < 100; i++) {
+            sources.add(new IdSource(Integer.toString(i)));
+        }
+
+        // not random access: the parallel mapping copies the sources
+        List<?> parallelDtos = (List<?>) mapper.getMethod("fromListParallel", List.class, int.class)
+                .invoke(null, sources, 7);
+        List<?> listDtos = (List<?>) mapper.getMethod("fromList", List.class)
+                .invoke(null, new ArrayList<>(sources));
+        Object[] arrayDtos = (Object[]) mapper.getMethod("fromArray", SimpleClass[].class)
+                .invoke(null, (Object) sources.toArray(new SimpleClass[0]));
+
+        assertThat(parallelDtos).hasSize(sources.size());
+        assertThat(listDtos).hasSize(sources.size());
+        assertThat(arrayDtos).hasLength(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            assertThat(getRenamedId(parallelDtos.get(i))).isEqualTo(Integer.toString(i));
+            assertThat(getRenamedId(listDtos.get(i))).isEqualTo(Integer.toString(i));
+            assertThat(getRenamedId(arrayDtos[i])).isEqualTo(Integer.toString(i));
+        }
+        assertThat(mapper.getMethod("fromCollection", Collection.class).invoke(null, (Object) null))
+                .isNull();
+    }
+
+    @Test
+    public void accessorsWithoutSourceAreReported() {
+        assertGeneration("Unmapped_.java", "UnmappedMapper.java", MAPPERS_OPTION)
+                .compilesWithoutError()
+                .withWarningContaining("Cannot generate the mapper of com.tmtron.dtogen.processor.test.Unmapped, "
+                        + "because these methods have no accessor on the source: [extra]");
+    }
+
+    private static Object getRenamedId(Object dto) throws Exception {
+        return dto.getClass().getSuperclass().getMethod("renamedId").invoke(dto);
+    }
+
+    public static class IdSource extends SimpleClass {
+        private final String id;
+
+        IdSource(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String id() {
+            return id;
+        }
+    }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import com.google.testing.compile.JavaFileObjects;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.Modifier;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class MethodSplitterTest {
+
+    private static final String PACKAGE_NAME = "com.tmtron.dtogen.split";
+    private static final String CLASS_NAME = "Wide";
+    /**
+     * each copy statement needs 8 bytes of bytecode: so a single copy method would be too large to be JIT-compiled
+     */
+    private static final int FIELD_COUNT = 1500;
+
+    @Test
+    public void smallMethodsAreNotSplit() {
+        MethodSplitter splitter = MethodSplitter.statements("copyFields")
+                .addStatement("this.a = other.a")
+                .addStatement("this.b = other.b");
+
+        assertThat(splitter.isSplit()).isFalse();
+        assertThat(splitter.getHelperMethods(Modifier.PRIVATE)).isEmpty();
+        assertThat(splitter.getCode().toString()).isEqualTo("this.a = other.a;\nthis.b = other.b;\n");
+    }
+
+    @Test
+    public void estimateIsNotTooOptimistic() {
+        // aload_0, aload_1, getfield, putfield: 8 bytes
+        assertThat(MethodSplitter.estimateBytecodeSize(CodeBlock.of("this.f0 = other.f0;"))).isAtLeast(8);
+        // aload_0, ldc, invokevirtual: 7 bytes
+        assertThat(MethodSplitter.estimateBytecodeSize(CodeBlock.of("this.append(\"x, y\");"))).isAtLeast(7);
+    }
+
+    @Test
+    public void generatedMethodsOfAVeryWideTemplateAreJitCompilable() throws IOException {
+        // the mapper needs a source: the template implements an interface with the accessors
+        StringBuilder wideSource = new StringBuilder("package " + PACKAGE_NAME + ";\n\n")
+                .append("public interface WideSource {\n");
+        for (int i = 0; i < 2000; i++) {
+            wideSource.append("    int f").append(i).append("();\n");
+        }
+        wideSource.append("}\n");
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new DtoGenAnnotationProcessor())
+                .withOptions("-Xlint:-processing", "-A" + ProcessorOptions.TARGET + "=mutable"
+                        , "-A" + ProcessorOptions.MAPPERS)
+                .compile(JavaFileObjects.forSourceString(PACKAGE_NAME + ".WideSource", wideSource.toString())
+                        , JavaFileObjects.forSourceString(PACKAGE_NAME + ".Wide_", "package " + PACKAGE_NAME + ";\n\n"
+                                + "@com.tmtron.dtogen.processor.DtoConfig\n"
+                                + "public abstract class Wide_ implements WideSource {\n}\n"));
+        assertThat(compilation.status()).isEqualTo(Compilation.Status.SUCCESS);
+
+        List<String> classFileNames = new ArrayList<>();
+        for (JavaFileObject generatedFile : compilation.generatedFiles()) {
+            if (generatedFile.getKind() != JavaFileObject.Kind.CLASS) {
+                continue;
+            }
+            String classFileName = generatedFile.getName().substring(generatedFile.getName().lastIndexOf('/') + 1);
+            classFileNames.add(classFileName);
+            for (Map.Entry<String, Integer> codeLength : getCodeLengths(AnnotationProcessorTest.readAll(generatedFile))
+                    .entrySet()) {
+                assertThat(codeLength.getValue()).named(classFileName + " " + codeLength.getKey())
+                        .isAtMost(MethodSplitter.HUGE_METHOD_LIMIT);
+            }
+        }
+        // the DTO and its mapper (the JSON writer is tested in JsonWriterTest)
+        assertThat(classFileNames).containsAllOf("Wide.class", "WideMapper.class");
+    }
+
+    @Test
+    public void unsplitMethodsExceedTheHugeMethodLimit() throws IOException {
+        Map<String, Integer> codeLengths = getCodeLengths(compileWideClass(Integer.MAX_VALUE));
+
+        assertThat(codeLengths.get("copyFrom")).isGreaterThan(MethodSplitter.HUGE_METHOD_LIMIT);
+        assertThat(codeLengths.get("equalFields")).isGreaterThan(MethodSplitter.HUGE_METHOD_LIMIT);
+        assertThat(codeLengths.get("hashFields")).isGreaterThan(MethodSplitter.HUGE_METHOD_LIMIT);
+    }
+
+    @Test
+    public void splitMethodsStayBelowTheHugeMethodLimit() throws IOException {
+        Map<String, Integer> codeLengths = getCodeLengths(compileWideClass(MethodSplitter.DEFAULT_BUDGET));
+
+        assertThat(codeLengths).containsKey("copyFields0");
+        assertThat(codeLengths).containsKey("equalFields0");
+        assertThat(codeLengths).containsKey("hashFields0");
+        for (Map.Entry<String, Integer> codeLength : codeLengths.entrySet()) {
+            assertThat(codeLength.getValue()).named(codeLength.getKey())
+                    .isAtMost(MethodSplitter.HUGE_METHOD_LIMIT);
+        }
+    }
+
+    @Test
+    public void splitMethodsBehaveLikeTheUnsplitMethods() throws Exception {
+        Class<?> wideClass = new ClassLoader(getClass().getClassLoader()) {
+            Class<?> define(byte[] classBytes) {
+                return defineClass(PACKAGE_NAME + "." + CLASS_NAME, classBytes, 0, classBytes.length);
+            }
+        }.define(compileWideClass(MethodSplitter.DEFAULT_BUDGET));
+        Object source = wideClass.getConstructor().newInstance();
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            wideClass.getField("f" + i).setInt(source, i);
+        }
+        Object target = wideClass.getConstructor().newInstance();
+        Method equalFields = wideClass.getMethod("equalFields", wideClass);
+        Method hashFields = wideClass.getMethod("hashFields");
+
+        assertThat(equalFields.invoke(target, source)).isEqualTo(false);
+        wideClass.getMethod("copyFrom", wideClass).invoke(target, source);
+        assertThat(equalFields.invoke(target, source)).isEqualTo(true);
+        assertThat(hashFields.invoke(target)).isEqualTo(hashFields.invoke(source));
+
+        Field lastField = wideClass.getField("f" + (FIELD_COUNT - 1));
+        lastField.setInt(target, -1);
+        assertThat(equalFields.invoke(target, source)).isEqualTo(false);
+        assertThat(hashFields.invoke(target)).isNotEqualTo(hashFields.invoke(source));
+    }
+
+    /**
+     * @return the class file of a class with {@link #FIELD_COUNT} int fields and the methods
+     * {@code copyFrom(Wide other)}, {@code equalFields(Wide other)} and {@code hashFields()}
+     */
+    private static byte[] compileWideClass(int budget) throws IOException {
+        ClassName wideClassName = ClassName.get(PACKAGE_NAME, CLASS_NAME);
+        TypeSpec.Builder wideClass = TypeSpec.classBuilder(wideClassName)
+                .addModifiers(Modifier.PUBLIC);
+        MethodSplitter copyFields = MethodSplitter.statements("copyFields")
+                .addParameter(wideClassName, "other")
+                .budget(budget);
+        MethodSplitter equalFields = MethodSplitter.conjunction("equalFields")
+                .addParameter(wideClassName, "other")
+                .budget(budget);
+        MethodSplitter hashFields = MethodSplitter.accumulator("hashFields", TypeName.INT, "result")
+                .budget(budget);
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            String fieldName = "f" + i;
+            wideClass.addField(FieldSpec.builder(TypeName.INT, fieldName, Modifier.PUBLIC).build());
+            copyFields.addStatement("this.$L = other.$L", fieldName, fieldName);
+            equalFields.addCode(CodeBlock.builder()
+                    .beginControlFlow("if (this.$L != other.$L)", fieldName, fieldName)
+                    .addStatement("return false")
+                    .endControlFlow()
+                    .build());
+            hashFields.addStatement("result = 31 * result + this.$L", fieldName);
+        }
+        wideClass.addMethod(MethodSpec.methodBuilder("copyFrom")
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(wideClassName, "other")
+                .addCode(copyFields.getCode())
+                .build());
+        wideClass.addMethods(copyFields.getHelperMethods(Modifier.PRIVATE));
+        wideClass.addMethod(MethodSpec.methodBuilder("equalFields")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(TypeName.BOOLEAN)
+                .addParameter(wideClassName, "other")
+                .addCode(equalFields.getCode())
+                .addStatement("return true")
+                .build());
+        wideClass.addMethods(equalFields.getHelperMethods(Modifier.PRIVATE));
+        wideClass.addMethod(MethodSpec.methodBuilder("hashFields")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(TypeName.INT)
+                .addStatement("int result = 1")
+                .addCode(hashFields.getCode())
+                .addStatement("return result")
+                .build());
+        wideClass.addMethods(hashFields.getHelperMethods(Modifier.PRIVATE));
+
+        Compilation compilation = Compiler.javac()
+                .compile(JavaFile.builder(PACKAGE_NAME, wideClass.build()).build().toJavaFileObject());
+        assertThat(compilation.status()).isEqualTo(Compilation.Status.SUCCESS);
+        return AnnotationProcessorTest.readAll(compilation.generatedFile(StandardLocation.CLASS_OUTPUT
+                , PACKAGE_NAME.replace('.', '/') + "/" + CLASS_NAME + ".class").get());
+    }
+
+    /**
+     * reads the bytecode size of the methods from the class file (see the JVM specification, chapter 4)
+     *
+     * @return key: method name, value: the length of the code attribute (the maximum length of all overloads)
+     */
+    static Map<String, Integer> getCodeLengths(byte[] classBytes) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(classBytes));
+        input.skipBytes(8); // magic, minor and major version
+        int constantPoolCount = input.readUnsignedShort();
+        String[] utf8Constants = new String[constantPoolCount];
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = input.readUnsignedByte();
+            switch (tag) {
+                case 1: // Utf8
+                    utf8Constants[i] = input.readUTF();
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    input.skipBytes(8);
+                    i++;
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    input.skipBytes(2);
+                    break;
+                case 15: // MethodHandle
+                    input.skipBytes(3);
+                    break;
+                default: // Integer, Float, Fieldref, Methodref, InterfaceMethodref, NameAndType, (Invoke)Dynamic
+                    input.skipBytes(4);
+            }
+        }
+        input.skipBytes(6); // access flags, this class, super class
+        input.skipBytes(2 * input.readUnsignedShort()); // interfaces
+        int fieldCount = input.readUnsignedShort();
+        for (int i = 0; i < fieldCount; i++) {
+            input.skipBytes(6); // access flags, name, descriptor
+            skipAttributes(input);
+        }
+        Map<String, Integer> result = new HashMap<>();
+        int methodCount = input.readUnsignedShort();
+        for (int i = 0; i < methodCount; i++) {
+            input.skipBytes(2); // access flags
+            String methodName = utf8Constants[input.readUnsignedShort()];
+            input.skipBytes(2); // descriptor
+            int attributeCount = input.readUnsignedShort();
+            for (int j = 0; j < attributeCount; j++) {
+                String attributeName = utf8Constants[input.readUnsignedShort()];
+                int attributeLength = input.readInt();
+                if ("Code".equals(attributeName)) {
+                    input.skipBytes(4); // max stack, max locals
+                    int codeLength = input.readInt();
+                    result.merge(methodName, codeLength, Math::max);
+                    input.skipBytes(attributeLength - 8);
+                } else {
+                    input.skipBytes(attributeLength);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void skipAttributes(DataInputStream input) throws IOException {
+        int attributeCount = input.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            input.skipBytes(2);
+            input.skipBytes(input.readInt());
+        }
+    }
+}
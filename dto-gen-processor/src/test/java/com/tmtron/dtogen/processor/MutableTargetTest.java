@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import com.tmtron.dtogen.processor.test.Reference;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * The mutable DTOs are final classes which can be reused, see {@link MutableLayout}
+ */
+public class MutableTargetTest extends AnnotationProcessorTest {
+
+    private static final String MUTABLE_OPTION = "-A" + ProcessorOptions.TARGET + "=mutable";
+    private static final String REPRODUCIBLE_OPTION = "-A" + ProcessorOptions.REPRODUCIBLE;
+
+    @Test
+    public void classTemplateGeneratesReusableClass() {
+        assertGeneration("CustomerMutable_.java", "CustomerMutable.java", MUTABLE_OPTION, REPRODUCIBLE_OPTION)
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("CustomerMutable.java"));
+    }
+
+    @Test
+    public void mapperUsesCopyFrom() {
+        assertGeneration("CustomerMutable_.java", "CustomerMutableMapper.java", MUTABLE_OPTION
+                , "-A" + ProcessorOptions.MAPPERS)
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("CustomerMutableMapper.java"));
+    }
+
+    @Test
+    public void accessorWithTheNameOfTheParameterIsCopied() throws Exception {
+        Class<?> dtoClass = compileAndLoad("ReferenceMutable_.java"
+                , "com.tmtron.dtogen.processor.test.ReferenceMutable", MUTABLE_OPTION);
+        Object dto = dtoClass.getConstructor().newInstance();
+        dtoClass.getMethod("copyFrom", Reference.class).invoke(dto, new Reference() {
+            @Override
+            public String source() {
+                return "origin";
+            }
+
+            @Override
+            public int count() {
+                return 3;
+            }
+        });
+        assertThat(dtoClass.getMethod("source").invoke(dto)).isEqualTo("origin");
+        assertThat(dtoClass.getMethod("count").invoke(dto)).isEqualTo(3);
+
+        dtoClass.getMethod("reset").invoke(dto);
+        assertThat(dtoClass.getMethod("source").invoke(dto)).isNull();
+    }
+
+    @Test
+    public void accessorsWithoutSourceGenerateAbstractClass() {
+        assertGeneration("Unmapped_.java", "Unmapped.java", MUTABLE_OPTION)
+                .compilesWithoutError()
+                .withWarningContaining("it does not support these members: [method extra (no accessor on the source)]");
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import org.junit.Test;
+
+public class PerformanceLintTest extends AnnotationProcessorTest {
+
+    private static final String LINT_OPTION = "-A" + ProcessorOptions.LINT;
+    private static final String MAX_BODY_LINES_OPTION = "-A" + ProcessorOptions.LINT_MAX_BODY_LINES + "=2";
+
+    @Test
+    public void noWarningsWhenTheLintIsDisabled() {
+        assertGenerationWithoutWarnings("LintDto");
+    }
+
+    @Test
+    public void warningsAreReported() {
+        assertGeneration("LintDto_.java", "LintDto.java", LINT_OPTION, MAX_BODY_LINES_OPTION)
+                .compilesWithoutError()
+                .withWarningCount(4)
+                .withWarningContaining("LintSource.count returns the boxed type java.lang.Integer")
+                .in(getJfoResource("LintDto_.java"))
+                .and()
+                .withWarningContaining("LintSource.tags returns the unbounded collection")
+                .and()
+                .withWarningContaining("the final field maxSize has the constant initializer 10")
+                .in(getJfoResource("LintDto_.java"))
+                .onLine(23)
+                .and()
+                .withWarningContaining("the copied body of LintDto_.describe has 3 lines (more than 2)")
+                .in(getJfoResource("LintDto_.java"))
+                .onLine(25);
+    }
+
+    @Test
+    public void bodiesWithinTheLimitAreNotReported() {
+        assertGeneration("LintDto_.java", "LintDto.java", LINT_OPTION)
+                .compilesWithoutError()
+                .withWarningCount(3);
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ProcessingStatsTest extends AnnotationProcessorTest {
+
+    @Rule
+    public TemporaryFolder reportFolder = new TemporaryFolder();
+
+    @Test
+    public void reportContainsTheCounters() throws IOException {
+        Path reportFile = reportFolder.getRoot().toPath().resolve("reports/stats.json");
+        assertGenerationWithoutWarnings("RenameMethod", "-A" + ProcessorOptions.STATS + "=" + reportFile);
+
+        String report = new String(Files.readAllBytes(reportFile), StandardCharsets.UTF_8);
+        assertThat(report).contains("\"templateCount\": 1,");
+        assertThat(report).contains("\"template\": \"com.tmtron.dtogen.processor.test.RenameMethod_\"");
+        assertThat(report).contains("\"membersCopied\": 1,");
+        assertThat(report).contains("\"membersIgnored\": 0,");
+        assertThat(report).contains("\"membersRenamed\": 1");
+    }
+
+    @Test
+    public void summary() {
+        assertGeneration("RenameMethod_.java", "RenameMethod.java"
+                , "-A" + ProcessorOptions.STATS + "=" + reportFolder.getRoot().toPath().resolve("stats.json"))
+                .compilesWithoutWarnings()
+                .withNoteContaining("dto-gen: 1 templates (0 from cache), 1 members copied, 0 ignored, 1 renamed");
+    }
+
+    @Test
+    public void renderTimingsOfParallelSourceFilesAreNotLost() {
+        // the projections and mappers of a template share the stats and they are rendered in parallel
+        TemplateStats stats = new TemplateStats("Template_");
+        IntStream.range(0, 100_000).parallel().forEach(i -> {
+            stats.addTypeSpecNanos(1);
+            stats.addRenderNanos(2);
+        });
+        assertThat(stats.getTypeSpecNanos()).isEqualTo(100_000L);
+        assertThat(stats.getRenderNanos()).isEqualTo(200_000L);
+    }
+
+}
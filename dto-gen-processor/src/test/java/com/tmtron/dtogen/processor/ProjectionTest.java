@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import org.junit.Test;
+
+public class ProjectionTest extends AnnotationProcessorTest {
+
+    @Test
+    public void generatesTheDtoAndAllProjections() {
+        assertGeneration("CustomerDto_.java", "CustomerDto.java")
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("CustomerDto.java"), getJfoResource("CustomerListItem.java")
+                        , getJfoResource("CustomerAudit.java"));
+    }
+
+    @Test
+    public void streamedProjectionsCompile() {
+        assertGeneration("CustomerDto_.java", "CustomerDto.java", "-A" + ProcessorOptions.STREAMING_THRESHOLD + "=0")
+                .compilesWithoutWarnings();
+    }
+
+    @Test
+    public void unknownMembersAreReported() {
+        assertGeneration("UnknownMember_.java", "UnknownMember.java")
+                .compilesWithoutError()
+                .withWarningContaining("The projection NamedItem references unknown members: [nmae]");
+    }
+
+    @Test
+    public void duplicateProjectionNamesFail() {
+        assertGeneration("DuplicateName_.java", "DuplicateName.java")
+                .failsToCompile()
+                .withErrorContaining("Duplicate projection name: NamedItem");
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import javax.lang.model.SourceVersion;
+
+/**
+ * The record DTOs are written with qualified names, see {@link RecordLayout}
+ */
+public class RecordTargetTest extends AnnotationProcessorTest {
+
+    private static final String RECORD_OPTION = "-A" + ProcessorOptions.TARGET + "=record";
+    private static final String REPRODUCIBLE_OPTION = "-A" + ProcessorOptions.REPRODUCIBLE;
+
+    private static void assumeRecordsAreSupported() {
+        // RELEASE_16: the constant does not exist in older JDKs
+        Assume.assumeTrue(SourceVersion.latestSupported().ordinal() >= 16);
+    }
+
+    @Test
+    public void classTemplateGeneratesRecord() {
+        assumeRecordsAreSupported();
+        assertGeneration("CustomerRecord_.java", "CustomerRecord.java", RECORD_OPTION, REPRODUCIBLE_OPTION)
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(getJfoResource("CustomerRecord.java"));
+    }
+
+    @Test
+    public void instanceFieldsGenerateClass() {
+        assumeRecordsAreSupported();
+        assertGeneration("InstanceField_.java", "InstanceField.java", RECORD_OPTION, REPRODUCIBLE_OPTION)
+                .compilesWithoutError()
+                .withWarningContaining("records do not support these members: [field counter]");
+    }
+
+    @Test
+    public void tooManyComponentsGenerateClass() {
+        assumeRecordsAreSupported();
+        assertGeneration(createWideTemplate("Wide_", 300), RECORD_OPTION)
+                .compilesWithoutError()
+                .withWarningContaining("records do not support these members: [canonical constructor (the components "
+                        + "need 301 of max. " + JavaPoetUtil.MAX_PARAMETER_SLOTS + " parameter slots)]");
+    }
+
+    @Test
+    public void olderSourceVersionGeneratesClass() {
+        assertGeneration("CustomerRecord_.java", "CustomerRecordAsClass.java", RECORD_OPTION, REPRODUCIBLE_OPTION
+                , "-source", "8")
+                .compilesWithoutError()
+                .and()
+                .generatesSources(getJfoResource("CustomerRecordAsClass.java"));
+    }
+
+    @Test
+    public void invalidTargetFails() {
+        assertGeneration("CustomerRecord_.java", "CustomerRecord.java", "-A" + ProcessorOptions.TARGET + "=struct")
+                .failsToCompile()
+                .withErrorContaining("The option " + ProcessorOptions.TARGET + " must be one of");
+    }
+
+}
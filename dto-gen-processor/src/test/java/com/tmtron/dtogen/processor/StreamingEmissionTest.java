@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor;
+
+import org.junit.Test;
+
+/**
+ * The templates are streamed, because the streaming threshold is 0: the expected files use qualified names
+ */
+public class StreamingEmissionTest extends AnnotationProcessorTest {
+
+    private static final String STREAM_ALL_OPTION = "-A" + ProcessorOptions.STREAMING_THRESHOLD + "=0";
+    private static final String REPRODUCIBLE_OPTION = "-A" + ProcessorOptions.REPRODUCIBLE;
+
+    @Test
+    public void templateCopyOriginalCode() {
+        assertGenerationWithoutWarnings("TemplateCopyOriginalCode", STREAM_ALL_OPTION, REPRODUCIBLE_OPTION);
+    }
+
+    @Test
+    public void classTemplateAnnotations() {
+        assertGenerationWithoutWarnings("UserDto", STREAM_ALL_OPTION, REPRODUCIBLE_OPTION);
+    }
+
+    @Test
+    public void interfaceSource() {
+        assertGenerationWithoutWarnings("InterfaceSimpleCopy", STREAM_ALL_OPTION, REPRODUCIBLE_OPTION);
+    }
+
+    @Test
+    public void invalidThresholdIsReported() {
+        assertGeneration("UserDto_.java", "UserDto.java", "-A" + ProcessorOptions.STREAMING_THRESHOLD + "=many")
+                .failsToCompile()
+                .withErrorContaining(ProcessorOptions.STREAMING_THRESHOLD);
+    }
+
+}
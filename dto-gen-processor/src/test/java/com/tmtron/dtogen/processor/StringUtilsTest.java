@@ -41,6 +41,34 @@ public class StringUtilsTest {
         assertThat("").isEqualTo(StringUtils.removeCurlyBraces(null));
     }
 
+    @Test
+    public void removeIndentation() {
+        assertThat(StringUtils.removeIndentation("        if (x) {\n\n            y();\n        }\n"))
+                .isEqualTo("if (x) {\n\n    y();\n}\n");
+    }
+
+    @Test
+    public void removeIndentationNormalizesLineBreaksAndKeepsBlankLines() {
+        assertThat(StringUtils.removeIndentation("\t\tx = 3;\r\n  \r\n\t\ty = 4;\r\n"))
+                .isEqualTo("x = 3;\n\ny = 4;\n");
+    }
+
+    @Test
+    public void removeIndentationNormalizesLineBreaksOfUnindentedInput() {
+        assertThat(StringUtils.removeIndentation("x = 3;\ry = 4;\r\n")).isEqualTo("x = 3;\ny = 4;\n");
+    }
+
+    @Test
+    public void removeIndentationOfARange() {
+        assertThat(StringUtils.removeIndentation("{\n    x = 3;\n      y = 4;\n}", 2, 26))
+                .isEqualTo("x = 3;\n  y = 4;\n");
+    }
+
+    @Test
+    public void removeIndentationReturnsUnindentedInput() {
+        assertThat(StringUtils.removeIndentation("x = 3;\n    y = 4;")).isEqualTo("x = 3;\n    y = 4;");
+    }
+
     @Test
     public void removeLastCharsForNull() {
         assertThat("").isEqualTo(StringUtils.removeLastChars(null, 7));
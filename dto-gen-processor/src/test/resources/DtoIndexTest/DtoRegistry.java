@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Generated;
+
+/**
+ * The DTOs that have been generated in this compilation: see also the resource {@code META-INF/dtogen/index}
+ */
+@Generated(
+    value = "com.tmtron.dtogen.processor.DtoConfig",
+    comments = "origin=META-INF/dtogen/index"
+)
+public final class DtoRegistry {
+  private static final Map<String, String[]> TEMPLATE_AND_SOURCES_BY_DTO = new HashMap<>(3);
+
+  private static final Map<String, String> DTO_BY_TEMPLATE = new HashMap<>(3);
+
+  static {
+    add("com.tmtron.dtogen.processor.test.FirstDto", "com.tmtron.dtogen.processor.test.FirstDto_", "com.tmtron.dtogen.processor.test.SimpleClass");
+    add("com.tmtron.dtogen.processor.test.SecondDto", "com.tmtron.dtogen.processor.test.SecondDto_", "com.tmtron.dtogen.processor.test.User");
+  }
+
+  private DtoRegistry() {
+  }
+
+  private static void add(String dto, String template, String... sources) {
+    String[] templateAndSources = new String[sources.length + 1];
+    templateAndSources[0] = template;
+    System.arraycopy(sources, 0, templateAndSources, 1, sources.length);
+    TEMPLATE_AND_SOURCES_BY_DTO.put(dto, templateAndSources);
+    DTO_BY_TEMPLATE.put(template, dto);
+  }
+
+  /**
+   * @return the qualified names of all DTOs
+   */
+  public static Set<String> getDtoClassNames() {
+    return Collections.unmodifiableSet(TEMPLATE_AND_SOURCES_BY_DTO.keySet());
+  }
+
+  /**
+   * @return the qualified name of the template of the DTO or null when the DTO is unknown
+   */
+  public static String getTemplateClassNameOrNull(String dtoClassName) {
+    String[] templateAndSources = TEMPLATE_AND_SOURCES_BY_DTO.get(dtoClassName);
+    return templateAndSources == null ? null : templateAndSources[0];
+  }
+
+  /**
+   * @return the qualified names of the source types (the interfaces and the superclass of the template) of the DTO or an empty list when the DTO is unknown
+   */
+  public static List<String> getSourceClassNames(String dtoClassName) {
+    String[] templateAndSources = TEMPLATE_AND_SOURCES_BY_DTO.get(dtoClassName);
+    if (templateAndSources == null) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(Arrays.asList(templateAndSources).subList(1, templateAndSources.length));
+  }
+
+  /**
+   * @return the qualified name of the DTO of the template or null when the template is unknown
+   */
+  public static String getDtoClassNameOrNull(String templateClassName) {
+    return DTO_BY_TEMPLATE.get(templateClassName);
+  }
+}
+
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor.test;
+
+import java.util.Arrays;
+import java.util.Objects;
+import javax.annotation.Generated;
+
+@Generated(
+        value = "com.tmtron.dtogen.processor.DtoConfig",
+        comments = "origin=com.tmtron.dtogen.processor.test.CustomerImmutable_"
+)
+public final class CustomerImmutable {
+    public static final String KIND = "customer";
+
+    private final double rating;
+
+    private final int[] scores;
+
+    private final String email;
+
+    private final long version;
+
+    private final String name;
+
+    private int cachedHashCode;
+
+    final int schemaVersion = 2;
+
+    public CustomerImmutable(double rating, int[] scores, String email, long version, String name) {
+        this.rating = rating;
+        this.scores = scores;
+        this.email = email;
+        this.version = version;
+        this.name = name;
+    }
+
+    public double rating() {
+        return rating;
+    }
+
+    public int[] scores() {
+        return scores;
+    }
+
+    public String email() {
+        return email;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String displayName() {
+        return KIND + " " + name();
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof CustomerImmutable)) {
+            return false;
+        }
+        CustomerImmutable other = (CustomerImmutable) object;
+        if (Double.compare(this.rating, other.rating) != 0) {
+            return false;
+        }
+        if (!Arrays.equals(this.scores, other.scores)) {
+            return false;
+        }
+        if (!Objects.equals(this.email, other.email)) {
+            return false;
+        }
+        if (this.version != other.version) {
+            return false;
+        }
+        if (!Objects.equals(this.name, other.name)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The hash code is computed on the first call: the DTO is immutable.
+     */
+    @Override
+    public int hashCode() {
+        int result = cachedHashCode;
+        if (result == 0) {
+            result = 1;
+            result = 31 * result + Double.hashCode(this.rating);
+            result = 31 * result + Arrays.hashCode(this.scores);
+            result = 31 * result + Objects.hashCode(this.email);
+            result = 31 * result + Long.hashCode(this.version);
+            result = 31 * result + Objects.hashCode(this.name);
+            cachedHashCode = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor.test;
+
+import javax.annotation.Generated;
+
+@Generated(
+        value = "com.tmtron.dtogen.processor.DtoConfig",
+        comments = "origin=com.tmtron.dtogen.processor.test.CustomerKey_"
+)
+public final class CustomerKey {
+    private final String email;
+
+    private final long version;
+
+    private final String name;
+
+    public CustomerKey(String email, long version, String name) {
+        this.email = email;
+        this.version = version;
+        this.name = name;
+    }
+
+    public String email() {
+        return email;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof CustomerKey && ((CustomerKey) object).name().equals(name());
+    }
+
+    @Override
+    public int hashCode() {
+        return name().hashCode();
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor.test;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+public final class OrderJsonWriter {
+
+    /**
+     * the names of the properties (in the order of the accessors): including the quotes and the colon
+     */
+    private static final String[] NAMES = new String[9];
+
+    private static final byte[][] NAME_BYTES = new byte[NAMES.length][];
+
+    private static final byte[] NULL_BYTES = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] TRUE_BYTES = "true".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] FALSE_BYTES = "false".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String HEX_DIGITS = "0123456789abcdef";
+
+    static {
+        NAMES[0] = "\"id\":";
+        NAMES[1] = "\"quantity\":";
+        NAMES[2] = "\"total\":";
+        NAMES[3] = "\"price\":";
+        NAMES[4] = "\"paid\":";
+        NAMES[5] = "\"grade\":";
+        NAMES[6] = "\"priority\":";
+        NAMES[7] = "\"unit\":";
+        NAMES[8] = "\"date\":";
+        for (int i = 0; i < NAMES.length; i++) {
+            NAME_BYTES[i] = NAMES[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private OrderJsonWriter() {
+    }
+
+    /**
+     * writes the DTO as JSON object: null values are also written
+     */
+    public static void writeJson(Order dto, Appendable out) throws IOException {
+        writeJson(dto, out, false);
+    }
+
+    /**
+     * writes the DTO as JSON object: {@code null} when the DTO is null
+     *
+     * @param omitNulls true: the accessors which return null are not written
+     */
+    public static void writeJson(Order dto, Appendable out, boolean omitNulls) throws IOException {
+        if (dto == null) {
+            out.append("null");
+            return;
+        }
+        out.append('{');
+        boolean comma = false;
+        String value0 = dto.id();
+        if (value0 != null) {
+            writeName(0, comma, out);
+            writeString(value0, out);
+            comma = true;
+        } else if (!omitNulls) {
+            writeName(0, comma, out);
+            out.append("null");
+            comma = true;
+        }
+        int value1 = dto.quantity();
+        writeName(1, comma, out);
+        out.append(Long.toString(value1));
+        comma = true;
+        long value2 = dto.total();
+        writeName(2, comma, out);
+        out.append(Long.toString(value2));
+        comma = true;
+        double value3 = dto.price();
+        writeName(3, comma, out);
+        out.append(Double.isFinite(value3) ? Double.toString(value3) : "null");
+        comma = true;
+        boolean value4 = dto.paid();
+        writeName(4, comma, out);
+        out.append(value4 ? "true" : "false");
+        comma = true;
+        char value5 = dto.grade();
+        writeName(5, comma, out);
+        writeString(String.valueOf(value5), out);
+        comma = true;
+        Integer value6 = dto.priority();
+        if (value6 != null) {
+            writeName(6, comma, out);
+            out.append(Long.toString(value6));
+            comma = true;
+        } else if (!omitNulls) {
+            writeName(6, comma, out);
+            out.append("null");
+            comma = true;
+        }
+        TimeUnit value7 = dto.unit();
+        if (value7 != null) {
+            writeName(7, comma, out);
+            writeString(value7.name(), out);
+            comma = true;
+        } else if (!omitNulls) {
+            writeName(7, comma, out);
+            out.append("null");
+            comma = true;
+        }
+        LocalDate value8 = dto.date();
+        if (value8 != null) {
+            writeName(8, comma, out);
+            writeString(value8.toString(), out);
+            comma = true;
+        } else if (!omitNulls) {
+            writeName(8, comma, out);
+            out.append("null");
+            comma = true;
+        }
+        out.append('}');
+    }
+
+    /**
+     * writes the DTO as UTF-8 encoded JSON object at the position of the buffer: null values are also written
+     *
+     * @throws java.nio.BufferOverflowException when the remaining space of the buffer is not sufficient
+     */
+    public static void writeJson(Order dto, ByteBuffer out) {
+        writeJson(dto, out, false);
+    }
+
+    /**
+     * writes the DTO as UTF-8 encoded JSON object at the position of the buffer: {@code null} when the DTO is null
+     *
+     * @param omitNulls true: the accessors which return null are not written
+     * @throws java.nio.BufferOverflowException when the remaining space of the buffer is not sufficient
+     */
+    public static void writeJson(Order dto, ByteBuffer out, boolean omitNulls) {
+        if (dto == null) {
+            out.put(NULL_BYTES);
+            return;
+        }
+        out.put((byte) '{');
+        boolean comma = false;
+        String value0 = dto.id();
+        if (value0 != null) {
+            writeName(0, comma, out);
+            writeString(value0, out);
+            comma = true;
+        } else if (!omitNulls) {
+            writeName(0, comma, out);
+            out.put(NULL_BYTES);
+            comma = true;
+        }
+        int value1 = dto.quantity();
+        writeName(1, comma, out);
+        writeLong(value1, out);
+        comma = true;
+        long value2 = dto.total();
+        writeName(2, comma, out);
+        writeLong(value2, out);
+        comma = true;
+        double value3 = dto.price();
+        writeName(3, comma, out);
+        writeAscii(Double.isFinite(value3) ? Double.toString(value3) : "null", out);
+        comma = true;
+        boolean value4 = dto.paid();
+        writeName(4, comma, out);
+        out.put(value4 ? TRUE_BYTES : FALSE_BYTES);
+        comma = true;
+        char value5 = dto.grade();
+        writeName(5, comma, out);
+        writeString(String.valueOf(value5), out);
+        comma = true;
+        Integer value6 = dto.priority();
+        if (value6 != null) {
+            writeName(6, comma, out);
+            writeLong(value6, out);
+            comma = true;
+        } else if (!omitNulls) {
+            writeName(6, comma, out);
+            out.put(NULL_BYTES);
+            comma = true;
+        }
+        TimeUnit value7 = dto.unit();
+        if (value7 != null) {
+            writeName(7, comma, out);
+            writeString(value7.name(), out);
+            comma = true;
+        } else if (!omitNulls) {
+            writeName(7, comma, out);
+            out.put(NULL_BYTES);
+            comma = true;
+        }
+        LocalDate value8 = dto.date();
+        if (value8 != null) {
+            writeName(8, comma, out);
+            writeString(value8.toString(), out);
+            comma = true;
+        } else if (!omitNulls) {
+            writeName(8, comma, out);
+            out.put(NULL_BYTES);
+            comma = true;
+        }
+        out.put((byte) '}');
+    }
+
+    private static void writeName(int index, boolean comma, Appendable out) throws IOException {
+        if (comma) {
+            out.append(',');
+        }
+        out.append(NAMES[index]);
+    }
+
+    private static void writeName(int index, boolean comma, ByteBuffer out) {
+        if (comma) {
+            out.put((byte) ',');
+        }
+        out.put(NAME_BYTES[index]);
+    }
+
+    /**
+     * writes the quoted value: the unescaped parts are appended as ranges
+     */
+    private static void writeString(CharSequence value, Appendable out) throws IOException {
+        out.append('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\') {
+                out.append(value, start, i);
+                if (c < 0x20) {
+                    out.append("\\u00").append(HEX_DIGITS.charAt(c >> 4)).append(HEX_DIGITS.charAt(c & 0xF));
+                } else {
+                    out.append('\\').append(c);
+                }
+                start = i + 1;
+            }
+        }
+        out.append(value, start, length);
+        out.append('"');
+    }
+
+    /**
+     * writes the quoted value as UTF-8: unpaired surrogates are written as '?'
+     */
+    private static void writeString(CharSequence value, ByteBuffer out) {
+        out.put((byte) '"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x20) {
+                out.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0');
+                out.put((byte) HEX_DIGITS.charAt(c >> 4)).put((byte) HEX_DIGITS.charAt(c & 0xF));
+            } else if (c == '"' || c == '\\') {
+                out.put((byte) '\\').put((byte) c);
+            } else if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6))).put((byte) (0x80 | (c & 0x3F)));
+            } else if (!Character.isSurrogate(c)) {
+                out.put((byte) (0xE0 | (c >> 12))).put((byte) (0x80 | ((c >> 6) & 0x3F)))
+                        .put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.put((byte) (0xF0 | (codePoint >> 18))).put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F))).put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                out.put((byte) '?');
+            }
+        }
+        out.put((byte) '"');
+    }
+
+    /**
+     * writes the digits directly to the buffer: no string is allocated
+     */
+    private static void writeLong(long value, ByteBuffer out) {
+        if (value == Long.MIN_VALUE) {
+            out.put(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int end = out.position() + digits;
+        if (end > out.limit()) {
+            throw new BufferOverflowException();
+        }
+        for (int i = end - 1; i >= out.position(); i--) {
+            out.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        out.position(end);
+    }
+
+    private static void writeAscii(String value, ByteBuffer out) {
+        for (int i = 0; i < value.length(); i++) {
+            out.put((byte) value.charAt(i));
+        }
+    }
+}
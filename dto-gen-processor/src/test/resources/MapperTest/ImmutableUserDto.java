@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor.test;
+
+/**
+ * A stub for the class which Immutables generates for the DTO {@code UserDto}: the Immutables annotation processor
+ * does not run in the tests
+ */
+final class ImmutableUserDto extends UserDto {
+
+    private final String firstName;
+    private final String lastName;
+
+    private ImmutableUserDto(String firstName, String lastName) {
+        this.firstName = firstName;
+        this.lastName = lastName;
+    }
+
+    @Override
+    protected String firstName() {
+        return firstName;
+    }
+
+    @Override
+    String lastName() {
+        return lastName;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static final class Builder {
+        private String firstName;
+        private String lastName;
+
+        Builder firstName(String firstName) {
+            this.firstName = firstName;
+            return this;
+        }
+
+        Builder lastName(String lastName) {
+            this.lastName = lastName;
+            return this;
+        }
+
+        ImmutableUserDto build() {
+            return new ImmutableUserDto(firstName, lastName);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+* Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tmtron.dtogen.processor.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public final class RenameMethodMapper {
+    static final int PARALLEL_THRESHOLD = 1000;
+
+    private RenameMethodMapper() {
+    }
+
+    /**
+     * @return a new DTO with the values of the source or null when the source is null
+     */
+    public static RenameMethod from(SimpleClass source) {
+        if (source == null) {
+            return null;
+        }
+        Impl result = new Impl();
+        // the renamed accessor is mapped from the accessor of the source
+        result.renamedId = source.id();
+        return result;
+    }
+
+    /**
+     * @return the DTOs of the sources (in the same order) or null when the sources are null
+     */
+    public static List<RenameMethod> fromList(List<? extends SimpleClass> sources) {
+        if (sources == null) {
+            return null;
+        }
+        int size = sources.size();
+        List<RenameMethod> result = new ArrayList<>(size);
+        if (sources instanceof RandomAccess) {
+            for (int i = 0; i < size; i++) {
+                result.add(from(sources.get(i)));
+            }
+        } else {
+            for (SimpleClass source : sources) {
+                result.add(from(source));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the DTOs of the sources (in the iteration order) or null when the sources are null
+     */
+    public static List<RenameMethod> fromCollection(Collection<? extends SimpleClass> sources) {
+        if (sources instanceof List) {
+            return fromList((List<? extends SimpleClass>) sources);
+        }
+        if (sources == null) {
+            return null;
+        }
+        List<RenameMethod> result = new ArrayList<>(sources.size());
+        for (SimpleClass source : sources) {
+            result.add(from(source));
+        }
+        return result;
+    }
+
+    /**
+     * @return the DTOs of the sources (in the same order) or null when the sources are null
+     */
+    public static RenameMethod[] fromArray(SimpleClass[] sources) {
+        if (sources == null) {
+            return null;
+        }
+        RenameMethod[] result = new RenameMethod[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            result[i] = from(sources[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @see #fromListParallel(List, int)
+     */
+    public static List<RenameMethod> fromListParallel(List<? extends SimpleClass> sources) {
+        return fromListParallel(sources, PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Maps the sources in the common fork-join pool: each task maps at most threshold sources.
+     *
+     * @return the DTOs of the sources (in the same order) or null when the sources are null: the
+     * list has a fixed size when the sources are mapped in parallel
+     */
+    public static List<RenameMethod> fromListParallel(List<? extends SimpleClass> sources,
+            int threshold) {
+        if (sources == null || sources.size() <= threshold) {
+            return fromList(sources);
+        }
+        List<? extends SimpleClass> randomAccessSources;
+        if (sources instanceof RandomAccess) {
+            randomAccessSources = sources;
+        } else {
+            randomAccessSources = new ArrayList<>(sources);
+        }
+        RenameMethod[] result = new RenameMethod[randomAccessSources.size()];
+        ForkJoinPool.commonPool().invoke(new MapTask(randomAccessSources, result, 0, result.length
+                , Math.max(1, threshold)));
+        return Arrays.asList(result);
+    }
+
+    private static final class MapTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends SimpleClass> sources;
+
+        private final RenameMethod[] result;
+
+        private final int start;
+
+        private final int end;
+
+        private final int threshold;
+
+        MapTask(List<? extends SimpleClass> sources, RenameMethod[] result, int start, int end,
+                int threshold) {
+            this.sources = sources;
+            this.result = result;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= threshold) {
+                for (int i = start; i < end; i++) {
+                    result[i] = from(sources.get(i));
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new MapTask(sources, result, start, middle, threshold)
+                    , new MapTask(sources, result, middle, end, threshold));
+        }
+    }
+
+    private static final class Impl extends RenameMethod {
+        private String renamedId;
+
+        @Override
+        public String renamedId() {
+            return renamedId;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor.test;
+
+public final class RenameMethodMapper {
+
+    private RenameMethodMapper() {
+    }
+
+    /**
+     * @return a new DTO with the values of the source or null when the source is null
+     */
+    public static RenameMethod from(SimpleClass source) {
+        if (source == null) {
+            return null;
+        }
+        Impl result = new Impl();
+        // the renamed accessor is mapped from the accessor of the source
+        result.renamedId = source.id();
+        return result;
+    }
+
+    private static final class Impl extends RenameMethod {
+        private String renamedId;
+
+        @Override
+        public String renamedId() {
+            return renamedId;
+        }
+    }
+}
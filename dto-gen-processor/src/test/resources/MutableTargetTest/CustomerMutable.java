@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2017 Martin Trummer (martin.trummer@tmtron.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tmtron.dtogen.processor.test;
+
+import javax.annotation.Generated;
+
+@Generated(
+        value = "com.tmtron.dtogen.processor.DtoConfig",
+        comments = "origin=com.tmtron.dtogen.processor.test.CustomerMutable_"
+)
+public final class CustomerMutable {
+    public static final String KIND = "customer";
+
+    private String name;
+
+    private String email;
+
+    private long version;
+
+    public String name() {
+        return name;
+    }
+
+    public String email() {
+        return email;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public String displayName() {
+        return KIND + " " + name();
+    }
+
+    /**
+     * sets the values of the accessors from the source: no objects are allocated
+     *
+     * @return this DTO
+     */
+    public <S extends Customer & Named> CustomerMutable copyFrom(S source) {
+        this.name = source.name();
+        this.email = source.email();
+        this.version = source.version();
+        return this;
+    }
+
+    /**
+     * sets the values of the accessors to their default values: null, 0 or false
+     *
+     * @return this DTO
+     */
+    public CustomerMutable reset() {
+        this.name = null;
+        this.email = null;
+        this.version = 0;
+        return this;
+    }
+}